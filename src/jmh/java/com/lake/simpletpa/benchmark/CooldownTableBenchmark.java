@@ -0,0 +1,90 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.util.CooldownTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CooldownTable against the boxed HashMap it replaced.
+ * Every simulated player has an active cooldown; lookups also probe
+ * players without one. Run with -prof gc to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CooldownTableBenchmark {
+    private static final long COOLDOWN_MS = 300_000L;
+
+    @Param({"10000"})
+    public int players;
+
+    private CooldownTable table;
+    private Map<UUID, Long> map;
+    private UUID[] uuids;
+    // Half stored players, half unknown ones
+    private UUID[] lookups;
+    private long now;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        uuids = StandIns.players(players);
+        UUID[] unknown = StandIns.players(players);
+        lookups = new UUID[players * 2];
+        for (int i = 0; i < players; i++) {
+            lookups[2 * i] = uuids[i];
+            lookups[2 * i + 1] = unknown[i];
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        now = System.currentTimeMillis();
+        table = new CooldownTable();
+        map = new HashMap<>();
+        for (UUID uuid : uuids) {
+            table.start(uuid, now, COOLDOWN_MS);
+            map.put(uuid, now);
+        }
+    }
+
+    private int nextIndex(int length) {
+        int index = next;
+        next = next + 1 >= length ? 0 : next + 1;
+        return index;
+    }
+
+    @Benchmark
+    public void tableSet() {
+        table.start(uuids[nextIndex(players)], now, COOLDOWN_MS);
+    }
+
+    @Benchmark
+    public void hashMapSet() {
+        map.put(uuids[nextIndex(players)], now);
+    }
+
+    @Benchmark
+    public boolean tableIsActive() {
+        return table.isActive(lookups[nextIndex(lookups.length)], now);
+    }
+
+    @Benchmark
+    public boolean hashMapIsActive() {
+        Long lastUse = map.get(lookups[nextIndex(lookups.length)]);
+        return lastUse != null && now - lastUse < COOLDOWN_MS;
+    }
+}
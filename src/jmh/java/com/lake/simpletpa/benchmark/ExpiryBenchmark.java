@@ -0,0 +1,66 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.TeleportRequest;
+import com.lake.simpletpa.TpaConfig;
+import com.lake.simpletpa.TpaSettings;
+import com.lake.simpletpa.TpaManager;
+import net.minecraft.server.MinecraftServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The worst-case expiry tick: every pending request becomes due at once.
+ * Players are offline, so this measures the bookkeeping without packets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExpiryBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private TpaManager manager;
+    private MinecraftServer server;
+    private UUID[] uuids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StandIns.loadConfig();
+        TpaConfig.GENERAL.requestExpiration.set(1);
+        TpaSettings.reload();
+        manager = TpaManager.getInstance();
+        server = StandIns.server();
+        uuids = StandIns.players(players);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillAndExpire() {
+        manager.clear();
+        for (int i = 0; i < players; i++) {
+            manager.addRequest(new TeleportRequest(uuids[i], uuids[(i + 1) % players], RequestType.TPA));
+        }
+        // Move every request past its one second deadline
+        StandIns.CLOCK.skip(1100);
+    }
+
+    @Benchmark
+    public void cleanExpiredAllDue() {
+        manager.cleanExpired(server);
+    }
+}
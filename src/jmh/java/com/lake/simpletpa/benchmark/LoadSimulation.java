@@ -0,0 +1,474 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.BackHistory;
+import com.lake.simpletpa.PlayerSessions;
+import com.lake.simpletpa.SimpleTPA;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.TpaConfig;
+import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.TpaSettings;
+import com.lake.simpletpa.WarmupManager;
+import com.lake.simpletpa.commands.TpaCommands;
+import com.lake.simpletpa.stats.AllocationMeter;
+import com.lake.simpletpa.stats.StatCounter;
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.TpaClock;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec2;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Headless load simulation: thousands of stand-in players send commands
+ * through the real dispatcher on simulated ticks, with no world and no
+ * network.
+ * Each tick runs the commands picked for it, the per-player tick handlers
+ * and the mod's end-of-tick work, on one thread, the way the server thread
+ * would. Ticks run back to back on a manual clock, so a five minute run takes
+ * as long as the mod's own work.
+ * Prints per-tick time percentiles, allocation, peak memory and packets sent
+ * per player.
+ *
+ * <pre>
+ * ./gradlew simulate --args='--players 5000 --seconds 300 --rate 0.5 --mix tpa=35,accept=25,move=20'
+ * </pre>
+ */
+public class LoadSimulation {
+
+    /**
+     * What a simulated player does, and its command.
+     */
+    enum Action {
+        TPA("tpa "),
+        TPAHERE("tpahere "),
+        ACCEPT("tpaccept"),
+        DENY("tpdeny"),
+        TOGGLE("tpa toggle"),
+        MOVE(null);
+
+        // Command text, followed by a target name when it ends with a space
+        final String command;
+
+        Action(String command) {
+            this.command = command;
+        }
+
+        boolean hasTarget() {
+            return command != null && command.endsWith(" ");
+        }
+    }
+
+    // Share of players whose client is in Spanish, the rest use English
+    private static final double SPANISH_SHARE = 0.3;
+    // Distance of one simulated step, above the warmup movement threshold
+    private static final double STEP = 0.5;
+
+    private final Options options;
+    private final SplittableRandom random;
+    private final CommandDispatcher<CommandSourceStack> dispatcher;
+    private final SimulatedPlayer[] players;
+    private final CommandSourceStack[] sources;
+    private final String[] names;
+    private final Action[] actions;
+    private final int[] weights;
+    private final int totalWeight;
+    private MinecraftServer server;
+
+    // Commands picked for the current tick, before its timer starts
+    private int[] tickActors;
+    private Action[] tickActions;
+    private int[] tickTargets;
+    private double actionBudget;
+
+    private long commandErrors;
+
+    LoadSimulation(Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed);
+        this.dispatcher = new CommandDispatcher<>();
+        this.players = new SimulatedPlayer[options.players];
+        this.sources = new CommandSourceStack[options.players];
+        this.names = new String[options.players];
+        this.actions = options.mix.keySet().toArray(new Action[0]);
+        this.weights = new int[actions.length];
+
+        int total = 0;
+        for (int i = 0; i < actions.length; i++) {
+            weights[i] = options.mix.get(actions[i]);
+            total += weights[i];
+        }
+        this.totalWeight = total;
+
+        this.tickActors = new int[16];
+        this.tickActions = new Action[16];
+        this.tickTargets = new int[16];
+    }
+
+    public static void main(String[] args) {
+        Options options = Options.parse(args);
+        LoadSimulation simulation = new LoadSimulation(options);
+        simulation.setUp();
+        simulation.run();
+
+        // Lets the smoke run in ./gradlew check fail on commands the dispatcher rejected
+        if (simulation.commandErrors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Loads the config for the run, registers the commands and logs every
+     * player in.
+     */
+    void setUp() {
+        StandIns.loadConfig();
+        // No chunks to look at: landing search and chunk waits stay off
+        TpaConfig.GENERAL.safeLanding.set(false);
+        TpaConfig.GENERAL.teleportWarmup.set(options.warmupSeconds);
+        TpaConfig.GENERAL.cooldown.set(options.cooldownSeconds);
+        TpaSettings.reload();
+
+        TpaCommands.register(dispatcher);
+
+        MinecraftServer server = StandIns.server();
+        ServerLevel level = StandIns.level(Level.OVERWORLD);
+        UUID[] uuids = StandIns.players(options.players);
+
+        for (int i = 0; i < options.players; i++) {
+            names[i] = "Player" + i;
+            String language = random.nextDouble() < SPANISH_SHARE ? "es_es" : "en_us";
+            SimulatedPlayer player = SimulatedPlayer.create(uuids[i], names[i], language, level);
+            players[i] = player;
+            sources[i] = new CommandSourceStack(player, Vec3.ZERO, Vec2.ZERO, level, 0, names[i],
+                    player.getName(), server, player);
+
+            PlayerEvent.PlayerLoggedInEvent event = new PlayerEvent.PlayerLoggedInEvent(player);
+            PlayerSessions.getInstance().onLoggedIn(event);
+            TpaManager.getInstance().onLoggedIn(event);
+        }
+
+        this.server = server;
+    }
+
+    /**
+     * Runs every tick and prints the report.
+     */
+    void run() {
+        int ticks = options.seconds * 20;
+        int discarded = Math.min(ticks - 1, options.discardSeconds * 20);
+        long[] tickNanos = new long[ticks - discarded];
+        long[] endTickNanos = new long[ticks - discarded];
+        long allocated = 0;
+        long peakHeap = 0;
+        long peakRetained = 0;
+        Runtime runtime = Runtime.getRuntime();
+        WarmupManager warmups = WarmupManager.getInstance();
+
+        for (int tick = 0; tick < ticks; tick++) {
+            TpaClock.tick();
+            int count = pickActions();
+
+            long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < count; i++) {
+                perform(tickActors[i], tickActions[i], tickTargets[i]);
+            }
+
+            // Forge fires this for every player on every tick
+            for (SimulatedPlayer player : players) {
+                warmups.onPlayerTick(new TickEvent.PlayerTickEvent(TickEvent.Phase.END, player));
+            }
+
+            long endTick = System.nanoTime();
+            SimpleTPA.runTick(server);
+            long end = System.nanoTime();
+
+            if (tick >= discarded) {
+                tickNanos[tick - discarded] = end - start;
+                endTickNanos[tick - discarded] = end - endTick;
+                allocated += AllocationMeter.currentThreadAllocatedBytes() - allocatedBefore;
+            }
+
+            peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+            peakRetained = Math.max(peakRetained, estimateRetained());
+        }
+
+        report(ticks, discarded, tickNanos, endTickNanos, allocated, peakHeap, peakRetained);
+    }
+
+    /**
+     * Picks this tick's commands from the configured rate and mix.
+     * Fractions of an action carry over to the next tick.
+     *
+     * @return Number of commands picked
+     */
+    private int pickActions() {
+        actionBudget += options.players * options.rate / 20.0;
+        int count = (int) actionBudget;
+        actionBudget -= count;
+
+        if (count > tickActors.length) {
+            tickActors = new int[count];
+            tickActions = new Action[count];
+            tickTargets = new int[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            int actor = random.nextInt(players.length);
+            tickActors[i] = actor;
+            tickActions[i] = pickAction();
+            tickTargets[i] = pickTarget(actor);
+        }
+        return count;
+    }
+
+    private Action pickAction() {
+        int roll = random.nextInt(totalWeight);
+        for (int i = 0; i < actions.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return actions[i];
+            }
+        }
+        return actions[actions.length - 1];
+    }
+
+    /**
+     * Picks who a request goes to: the first player for the configured share
+     * of requests (a popular player everyone spams), anyone else otherwise.
+     */
+    private int pickTarget(int actor) {
+        if (players.length == 1) {
+            return 0;
+        }
+        if (actor != 0 && random.nextInt(100) < options.hotPercent) {
+            return 0;
+        }
+
+        int target = random.nextInt(players.length - 1);
+        return target >= actor ? target + 1 : target;
+    }
+
+    private void perform(int actor, Action action, int target) {
+        if (action == Action.MOVE) {
+            players[actor].walk(random.nextBoolean() ? STEP : -STEP);
+            return;
+        }
+
+        String command = action.hasTarget() ? action.command + names[target] : action.command;
+        try {
+            dispatcher.execute(command, sources[actor]);
+        } catch (CommandSyntaxException e) {
+            commandErrors++;
+        }
+    }
+
+    /**
+     * Estimates the bytes the mod retains, with the same per-entry sizes as
+     * /tpa stats.
+     */
+    private static long estimateRetained() {
+        TpaManager manager = TpaManager.getInstance();
+        BackHistory back = BackHistory.getInstance();
+
+        return (long) manager.getRequestCount() * TpaStats.BYTES_PER_REQUEST
+                + (long) manager.getCooldownCapacity() * TpaStats.BYTES_PER_COOLDOWN_SLOT
+                + (long) manager.getIgnoringCount() * TpaStats.BYTES_PER_IGNORING
+                + (long) WarmupManager.getInstance().getWarmupCount() * TpaStats.BYTES_PER_WARMUP
+                + back.getSlotCount() * TpaStats.BYTES_PER_BACK_SLOT;
+    }
+
+    private void report(int ticks, int discarded, long[] tickNanos, long[] endTickNanos, long allocated,
+            long peakHeap, long peakRetained) {
+        Arrays.sort(tickNanos);
+        Arrays.sort(endTickNanos);
+
+        long[] packets = new long[players.length];
+        long totalPackets = 0;
+        for (int i = 0; i < players.length; i++) {
+            packets[i] = players[i].getPacketCount();
+            totalPackets += packets[i];
+        }
+        Arrays.sort(packets);
+
+        System.out.printf(Locale.ROOT, "SimpleTPA load simulation: %d players, %d ticks (%d s), %.2f actions/player/s,"
+                + " seed %d%n", options.players, ticks, options.seconds, options.rate, options.seed);
+        System.out.printf(Locale.ROOT, "Mix: %s, %d%% of requests to %s%n", mixDescription(), options.hotPercent,
+                names[0]);
+        System.out.printf(Locale.ROOT, "Warmup %d s, cooldown %d s; first %d ticks left out of the timings%n",
+                options.warmupSeconds, options.cooldownSeconds, discarded);
+
+        System.out.println();
+        System.out.println("Tick time              p50        p90        p99      p99.9        max       mean");
+        printTimes("  whole tick", tickNanos);
+        printTimes("  end-of-tick", endTickNanos);
+        System.out.printf(Locale.ROOT, "  allocated per tick: %s%n",
+                AllocationMeter.isSupported()
+                        ? TpaStats.formatBytes(allocated / tickNanos.length)
+                        : "not supported by this JVM");
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Peak heap used: %s (whole JVM, sampled every tick)%n",
+                TpaStats.formatBytes(peakHeap));
+        System.out.printf(Locale.ROOT, "Peak retained by the mod: ~%s (estimated as in /tpa stats)%n",
+                TpaStats.formatBytes(peakRetained));
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Packets per player: mean %.1f, p50 %d, p99 %d, max %d (%.2f/s per player)%n",
+                totalPackets / (double) players.length, percentile(packets, 50), percentile(packets, 99),
+                packets[packets.length - 1], totalPackets / (double) players.length / options.seconds);
+
+        System.out.println();
+        TpaStats stats = TpaStats.getInstance();
+        printCounter("Requests sent", stats.requestsSent);
+        printCounter("Dropped by flood limits", stats.requestsDropped);
+        printCounter("Accepted", stats.requestsAccepted);
+        printCounter("Denied", stats.requestsDenied);
+        printCounter("Expired", stats.requestsExpired);
+        printCounter("Warmups cancelled", stats.warmupsCancelled);
+        printCounter("Teleports", stats.teleports);
+        if (commandErrors > 0) {
+            System.out.printf(Locale.ROOT, "  Commands that failed to parse: %d%n", commandErrors);
+        }
+    }
+
+    private String mixDescription() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < actions.length; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(actions[i].name().toLowerCase(Locale.ROOT))
+                    .append(' ')
+                    .append(weights[i] * 100 / totalWeight)
+                    .append('%');
+        }
+        return description.toString();
+    }
+
+    private static void printTimes(String label, long[] sorted) {
+        long sum = 0;
+        for (long nanos : sorted) {
+            sum += nanos;
+        }
+
+        System.out.printf(Locale.ROOT, "%-16s %10s %10s %10s %10s %10s %10s%n", label,
+                TpaStats.formatNanos(percentile(sorted, 50)),
+                TpaStats.formatNanos(percentile(sorted, 90)),
+                TpaStats.formatNanos(percentile(sorted, 99)),
+                TpaStats.formatNanos(percentile(sorted, 99.9)),
+                TpaStats.formatNanos(sorted[sorted.length - 1]),
+                TpaStats.formatNanos(sum / sorted.length));
+    }
+
+    private static void printCounter(String label, StatCounter counter) {
+        System.out.printf(Locale.ROOT, "  %s: %d%n", label, counter.getTotal());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Command line options, all optional.
+     */
+    static final class Options {
+        int players = 5000;
+        int seconds = 300;
+        // Actions per player per second
+        double rate = 0.5;
+        int hotPercent = 10;
+        int warmupSeconds = TpaConfig.GENERAL.teleportWarmup.getDefault();
+        int cooldownSeconds = TpaConfig.GENERAL.cooldown.getDefault();
+        int discardSeconds = 10;
+        long seed = 1;
+        Map<Action, Integer> mix = parseMix("tpa=35,tpahere=10,accept=25,deny=10,toggle=2,move=18");
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+
+            for (int i = 0; i < args.length; i += 2) {
+                String option = args[i];
+                if (i + 1 == args.length) {
+                    throw usage("Missing value for " + option);
+                }
+
+                String value = args[i + 1];
+                switch (option) {
+                    case "--players" -> options.players = positive(value);
+                    case "--seconds" -> options.seconds = positive(value);
+                    case "--rate" -> options.rate = Double.parseDouble(value);
+                    case "--hot" -> options.hotPercent = Integer.parseInt(value);
+                    case "--warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                    case "--cooldown" -> options.cooldownSeconds = Integer.parseInt(value);
+                    case "--discard" -> options.discardSeconds = Integer.parseInt(value);
+                    case "--seed" -> options.seed = Long.parseLong(value);
+                    case "--mix" -> options.mix = parseMix(value);
+                    default -> throw usage("Unknown option " + option);
+                }
+            }
+
+            return options;
+        }
+
+        /**
+         * Parses weights like "tpa=35,accept=25,move=20".
+         * Actions left out are never picked.
+         */
+        static Map<Action, Integer> parseMix(String text) {
+            Map<Action, Integer> mix = new EnumMap<>(Action.class);
+
+            for (String entry : text.split(",")) {
+                String[] parts = entry.split("=");
+                if (parts.length != 2) {
+                    throw usage("Bad mix entry " + entry);
+                }
+
+                Action action;
+                try {
+                    action = Action.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw usage("Unknown action " + parts[0]);
+                }
+                int weight = Integer.parseInt(parts[1].trim());
+                if (weight > 0) {
+                    mix.put(action, weight);
+                }
+            }
+
+            if (mix.isEmpty()) {
+                throw usage("The mix needs at least one action with a positive weight");
+            }
+            return mix;
+        }
+
+        private static int positive(String value) {
+            int number = Integer.parseInt(value);
+            if (number <= 0) {
+                throw usage("Expected a positive number, got " + value);
+            }
+            return number;
+        }
+
+        private static IllegalArgumentException usage(String problem) {
+            return new IllegalArgumentException(problem + "\nOptions: --players N --seconds N --rate ACTIONS_PER_S"
+                    + " --hot PERCENT --warmup S --cooldown S --discard S --seed N"
+                    + " --mix tpa=W,tpahere=W,accept=W,deny=W,toggle=W,move=W");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.util.MessageTemplate;
+import com.lake.simpletpa.util.MessageUtils;
+import net.minecraft.network.chat.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message formatting: the per-call regex/String.format path against the
+ * precompiled templates. Sending itself is a packet write and is not measured.
+ * renderOriginal is the old MessageUtils.send path and renderTemplate the one
+ * that replaced it, so the pair is the before/after of the precompiled
+ * templates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBenchmark {
+    private static final String MESSAGE = "&e%s &aquiere teletransportarse a ti.";
+    private static final String PLAYER = "Steve";
+
+    private MessageTemplate template;
+
+    @Setup
+    public void setUp() {
+        StandIns.loadConfig();
+        template = MessageTemplate.compile(MESSAGE);
+    }
+
+    @Benchmark
+    public String formatColorsRegex() {
+        // The original implementation, compiling the pattern on every call
+        return MESSAGE.replaceAll("&([0-9a-fk-or])", "§$1");
+    }
+
+    @Benchmark
+    public String formatColors() {
+        return MessageUtils.formatColors(MESSAGE);
+    }
+
+    @Benchmark
+    public Component renderOriginal() {
+        // The original send path: String.format, then the per-call regex
+        return Component.literal(String.format(MESSAGE, PLAYER).replaceAll("&([0-9a-fk-or])", "§$1"));
+    }
+
+    @Benchmark
+    public Component renderFormatted() {
+        return Component.literal(MessageUtils.formatColors(MessageUtils.format(MESSAGE, PLAYER)));
+    }
+
+    @Benchmark
+    public Component renderTemplate() {
+        return template.render(PLAYER);
+    }
+}
@@ -0,0 +1,102 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.StandIns;
+import com.mojang.authlib.GameProfile;
+import net.minecraft.network.PacketSendListener;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundPlayerPositionPacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Player stand-in for the load simulation.
+ * Allocated without running the ServerPlayer constructor, only the fields the
+ * mod reads are filled in. Packets are counted instead of sent, and a
+ * teleport just moves the player and counts the position packet a real one
+ * would send.
+ */
+final class SimulatedPlayer extends ServerPlayer {
+    private static final Field LEVEL = StandIns.field(Entity.class, "level");
+    private static final Field POSITION = StandIns.field(Entity.class, "position");
+
+    private SimulatedPlayer() {
+        super(null, null, null);
+    }
+
+    /**
+     * Creates a player standing at the origin of a level.
+     *
+     * @param uuid     UUID of the player
+     * @param name     Name of the player
+     * @param language Client language, as sent by the client
+     * @param level    Level the player is in
+     */
+    static SimulatedPlayer create(UUID uuid, String name, String language, ServerLevel level) {
+        SimulatedPlayer player = StandIns.allocate(SimulatedPlayer.class);
+        StandIns.setField(Entity.class, player, "uuid", uuid);
+        StandIns.setField(Entity.class, player, "stringUUID", uuid.toString());
+        StandIns.setField(Player.class, player, "gameProfile", new GameProfile(uuid, name));
+        StandIns.setField(ServerPlayer.class, player, "language", language);
+        player.connection = StandIns.allocate(CountingConnection.class);
+        player.place(level, Vec3.ZERO);
+        return player;
+    }
+
+    /**
+     * Gets the number of packets sent to this player.
+     */
+    long getPacketCount() {
+        return ((CountingConnection) connection).packets;
+    }
+
+    /**
+     * Moves the player without going through the level, as their client would.
+     *
+     * @param dx Blocks to move along the x axis
+     */
+    void walk(double dx) {
+        place(level(), position().add(dx, 0.0, 0.0));
+    }
+
+    @Override
+    public void teleportTo(ServerLevel level, double x, double y, double z, float yaw, float pitch) {
+        place(level, new Vec3(x, y, z));
+        setYRot(yaw);
+        setXRot(pitch);
+        connection.send(new ClientboundPlayerPositionPacket(x, y, z, yaw, pitch, Collections.emptySet(), 0));
+    }
+
+    private void place(Level level, Vec3 position) {
+        try {
+            LEVEL.set(this, level);
+            POSITION.set(this, position);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot move simulated player", e);
+        }
+    }
+
+    /**
+     * Connection stand-in that counts the packets sent through it.
+     */
+    static final class CountingConnection extends ServerGamePacketListenerImpl {
+        long packets;
+
+        private CountingConnection() {
+            super(null, null, null);
+        }
+
+        @Override
+        public void send(Packet<?> packet, PacketSendListener listener) {
+            packets++;
+        }
+    }
+}
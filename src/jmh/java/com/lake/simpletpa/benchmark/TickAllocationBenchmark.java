@@ -0,0 +1,66 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.SimpleTPA;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.TeleportRequest;
+import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.WarmupManager;
+import com.lake.simpletpa.WarmupTask;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole end-of-tick pass on an idle server: every simulated player has a
+ * pending request and a long warmup, and nothing becomes due.
+ * The clock is not advanced, so every invocation is the same idle tick.
+ * TickAllocationTest checks the same tick allocates nothing as part of the
+ * build; run this with -prof gc to see the allocation rate next to the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TickAllocationBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private MinecraftServer server;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StandIns.loadConfig();
+        server = StandIns.server();
+        UUID[] uuids = StandIns.players(players);
+
+        TpaManager manager = TpaManager.getInstance();
+        WarmupManager warmups = WarmupManager.getInstance();
+        manager.clear();
+        warmups.clear();
+
+        for (int i = 0; i < players; i++) {
+            manager.addRequest(new TeleportRequest(uuids[i], uuids[(i + 1) % players], RequestType.TPA));
+            warmups.startWarmup(new WarmupTask(uuids[i], uuids[i], RequestType.TPA, Vec3.ZERO, null, Vec3.ZERO,
+                    0.0F, 0.0F, 60));
+        }
+
+        // Moves the new requests and tasks into their queues
+        SimpleTPA.runTick(server);
+    }
+
+    @Benchmark
+    public void idleTick() {
+        SimpleTPA.runTick(server);
+    }
+}
@@ -0,0 +1,105 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.TeleportRequest;
+import com.lake.simpletpa.TpaConfig;
+import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.TpaSettings;
+import net.minecraft.server.MinecraftServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request storage, cooldown checks and the per-tick expiry pass.
+ * Every simulated player has one pending incoming request and an active cooldown.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TpaManagerBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private TpaManager manager;
+    private MinecraftServer server;
+    private UUID[] uuids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StandIns.loadConfig();
+        // Cooldowns are off by default, and setCooldown would then store nothing
+        TpaConfig.GENERAL.cooldown.set(300);
+        TpaSettings.reload();
+        manager = TpaManager.getInstance();
+        server = StandIns.server();
+        uuids = StandIns.players(players);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        manager.clear();
+        for (int i = 0; i < players; i++) {
+            manager.addRequest(new TeleportRequest(uuids[i], uuids[(i + 1) % players], RequestType.TPA));
+            manager.setCooldown(uuids[i]);
+        }
+        // Moves the new requests into the expiry queue
+        manager.cleanExpired(server);
+    }
+
+    private UUID nextPlayer() {
+        UUID player = uuids[next];
+        next = next + 1 == players ? 0 : next + 1;
+        return player;
+    }
+
+    @Benchmark
+    public TeleportRequest getRequest() {
+        return manager.getRequest(nextPlayer());
+    }
+
+    @Benchmark
+    public boolean isOnCooldown() {
+        return manager.isOnCooldown(nextPlayer());
+    }
+
+    @Benchmark
+    public void setCooldown() {
+        manager.setCooldown(nextPlayer());
+    }
+
+    /**
+     * A tick where nothing expires, the steady state of a busy server.
+     */
+    @Benchmark
+    public void cleanExpiredNothingDue() {
+        manager.cleanExpired(server);
+    }
+
+    /**
+     * Replaces existing requests. Replaced requests stay queued until their
+     * deadline, so this runs in fixed batches on a freshly filled manager.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 10_000)
+    @Measurement(iterations = 20, batchSize = 10_000)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void addRequest() {
+        UUID target = nextPlayer();
+        manager.addRequest(new TeleportRequest(uuids[next], target, RequestType.TPA));
+    }
+}
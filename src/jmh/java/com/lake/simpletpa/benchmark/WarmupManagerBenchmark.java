@@ -0,0 +1,91 @@
+package com.lake.simpletpa.benchmark;
+
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.WarmupManager;
+import com.lake.simpletpa.WarmupTask;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-tick warmup pass with every simulated player in a long warmup.
+ * Tasks have no level: chunk preloading is disabled by StandIns.loadConfig().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WarmupManagerBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private WarmupManager manager;
+    private MinecraftServer server;
+    private UUID[] uuids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StandIns.loadConfig();
+        manager = WarmupManager.getInstance();
+        server = StandIns.server();
+        uuids = StandIns.players(players);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        manager.clear();
+        for (int i = 0; i < players; i++) {
+            manager.startWarmup(task(uuids[i]));
+        }
+        // Moves the new tasks into the completion queue
+        manager.checkWarmups(server);
+    }
+
+    private WarmupTask task(UUID player) {
+        return new WarmupTask(player, player, RequestType.TPA, Vec3.ZERO, null, Vec3.ZERO, 0.0F, 0.0F, 60);
+    }
+
+    /**
+     * A tick where no warmup completes.
+     */
+    @Benchmark
+    public void checkWarmupsNothingDue() {
+        manager.checkWarmups(server);
+    }
+
+    @Benchmark
+    public boolean isWarming() {
+        UUID player = uuids[next];
+        next = next + 1 == players ? 0 : next + 1;
+        return manager.isWarming(player);
+    }
+
+    /**
+     * Restarts existing warmups. Replaced tasks stay queued until their
+     * completion time, so this runs in fixed batches on a freshly filled manager.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = 10_000)
+    @Measurement(iterations = 20, batchSize = 10_000)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void startWarmup() {
+        UUID player = uuids[next];
+        next = next + 1 == players ? 0 : next + 1;
+        manager.startWarmup(task(player));
+    }
+}
@@ -0,0 +1,197 @@
+package com.lake.simpletpa;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton store of the last places each online player teleported from,
+ * used by /back.
+ * Each player gets a fixed-size ring of primitive arrays, allocated once on
+ * their first teleport, so recording a location allocates nothing and memory
+ * per player is constant. Dimensions are stored as small ids of their
+ * ResourceKey, never as ServerLevel references, so no world is kept alive.
+ * Histories are dropped on logout.
+ */
+public class BackHistory {
+    private static final BackHistory INSTANCE = new BackHistory();
+
+    private final Map<UUID, Ring> histories;
+    // Dimension id -> key; ids are indexes into this list and never reused
+    private final List<ResourceKey<Level>> dimensions;
+    private final Map<ResourceKey<Level>, Integer> dimensionIds;
+
+    private BackHistory() {
+        this.histories = new ConcurrentHashMap<>();
+        this.dimensions = new ArrayList<>();
+        this.dimensionIds = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the singleton instance of BackHistory.
+     */
+    public static BackHistory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drops every history.
+     * Called when the server stops.
+     */
+    public void clear() {
+        histories.clear();
+    }
+
+    /**
+     * Records where a player is standing, right before they are teleported away.
+     * 
+     * @param player The player about to teleport
+     */
+    public void record(ServerPlayer player) {
+        int capacity = TpaSettings.get().backHistorySize;
+        Ring ring = histories.get(player.getUUID());
+
+        if (ring == null) {
+            ring = new Ring(capacity);
+            histories.put(player.getUUID(), ring);
+        } else if (ring.capacity() != capacity) {
+            // The history size was changed by a reload, keep the newest locations
+            ring = ring.resize(capacity);
+            histories.put(player.getUUID(), ring);
+        }
+
+        ring.push(dimensionId(player.serverLevel().dimension()),
+                player.getX(), player.getY(), player.getZ(), player.getYRot(), player.getXRot());
+    }
+
+    /**
+     * Gets a previous location of a player.
+     * 
+     * @param playerUuid UUID of the player
+     * @param steps      How far back to go, 1 being the last teleport
+     * @return The location, or null if the history does not go back that far
+     */
+    public Location get(UUID playerUuid, int steps) {
+        Ring ring = histories.get(playerUuid);
+        return ring != null ? ring.get(steps) : null;
+    }
+
+    /**
+     * Gets the number of players with a history.
+     */
+    public int getHistoryCount() {
+        return histories.size();
+    }
+
+    /**
+     * Gets the number of location slots allocated across all histories.
+     */
+    public long getSlotCount() {
+        long slots = 0;
+        for (Ring ring : histories.values()) {
+            slots += ring.capacity();
+        }
+        return slots;
+    }
+
+    @SubscribeEvent
+    public void onLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        histories.remove(event.getEntity().getUUID());
+    }
+
+    private int dimensionId(ResourceKey<Level> dimension) {
+        Integer id = dimensionIds.get(dimension);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (dimensions) {
+            return dimensionIds.computeIfAbsent(dimension, key -> {
+                dimensions.add(key);
+                return dimensions.size() - 1;
+            });
+        }
+    }
+
+    private ResourceKey<Level> dimension(int id) {
+        synchronized (dimensions) {
+            return dimensions.get(id);
+        }
+    }
+
+    /**
+     * A location read back from the history.
+     */
+    public record Location(ResourceKey<Level> dimension, double x, double y, double z, float yaw, float pitch) {
+    }
+
+    /**
+     * Fixed-size ring of locations stored column by column.
+     */
+    private final class Ring {
+        private final int[] dimension;
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+        private final float[] yaw;
+        private final float[] pitch;
+        // Slot the next location goes in
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.dimension = new int[capacity];
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            this.z = new double[capacity];
+            this.yaw = new float[capacity];
+            this.pitch = new float[capacity];
+        }
+
+        int capacity() {
+            return dimension.length;
+        }
+
+        synchronized void push(int dimensionId, double px, double py, double pz, float pYaw, float pPitch) {
+            dimension[head] = dimensionId;
+            x[head] = px;
+            y[head] = py;
+            z[head] = pz;
+            yaw[head] = pYaw;
+            pitch[head] = pPitch;
+            head = (head + 1) % dimension.length;
+            size = Math.min(size + 1, dimension.length);
+        }
+
+        /**
+         * Copies the newest locations that fit into a ring of another size.
+         */
+        synchronized Ring resize(int capacity) {
+            Ring resized = new Ring(capacity);
+
+            // Oldest first, so they keep their order in the new ring
+            for (int steps = Math.min(size, capacity); steps >= 1; steps--) {
+                int slot = Math.floorMod(head - steps, dimension.length);
+                resized.push(dimension[slot], x[slot], y[slot], z[slot], yaw[slot], pitch[slot]);
+            }
+            return resized;
+        }
+
+        synchronized Location get(int steps) {
+            if (steps < 1 || steps > size) {
+                return null;
+            }
+
+            int slot = Math.floorMod(head - steps, dimension.length);
+            return new Location(dimension(dimension[slot]), x[slot], y[slot], z[slot], yaw[slot], pitch[slot]);
+        }
+    }
+}
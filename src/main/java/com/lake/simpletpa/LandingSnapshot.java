@@ -0,0 +1,160 @@
+package com.lake.simpletpa;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Copy of the blocks around a teleport destination, taken on the server
+ * thread and safe to read from any thread afterwards.
+ * Holds copies of the chunk sections covering the search box plus the
+ * ground height of every searched column.
+ */
+final class LandingSnapshot implements SafeLanding.BlockSource {
+    private final int minSectionX;
+    private final int minSectionY;
+    private final int minSectionZ;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int sectionsZ;
+    // Copied block data, null for empty sections
+    private final PalettedContainer<BlockState>[] sections;
+    // Highest motion-blocking block of each column, indexed like SafeLanding.COLUMNS
+    private final int[] surface;
+    private final int minY;
+    private final int maxY;
+
+    private LandingSnapshot(int minSectionX, int minSectionY, int minSectionZ, int sectionsX, int sectionsY,
+            int sectionsZ, PalettedContainer<BlockState>[] sections, int[] surface, int minY, int maxY) {
+        this.minSectionX = minSectionX;
+        this.minSectionY = minSectionY;
+        this.minSectionZ = minSectionZ;
+        this.sectionsX = sectionsX;
+        this.sectionsY = sectionsY;
+        this.sectionsZ = sectionsZ;
+        this.sections = sections;
+        this.surface = surface;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Copies the area searched around a destination.
+     * Must be called from the server thread.
+     *
+     * @param level  Destination dimension
+     * @param target Destination block
+     * @return The snapshot, or null if a needed chunk is not loaded
+     */
+    @SuppressWarnings("unchecked")
+    static LandingSnapshot capture(ServerLevel level, BlockPos target) {
+        int radius = SafeLanding.SEARCH_RADIUS;
+        int[] surface = new int[SafeLanding.COLUMNS.length];
+        int lowestSurface = target.getY();
+
+        for (int i = 0; i < surface.length; i++) {
+            int x = target.getX() + SafeLanding.COLUMNS[i][0];
+            int z = target.getZ() + SafeLanding.COLUMNS[i][1];
+            LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(x),
+                    SectionPos.blockToSectionCoord(z));
+            if (chunk == null) {
+                return null;
+            }
+
+            surface[i] = chunk.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x & 15, z & 15);
+            lowestSurface = Math.min(lowestSurface, surface[i]);
+        }
+
+        // Reach down to the ground when the destination is in the air, within a limit
+        int bottom = Math.max(target.getY() - SafeLanding.MAX_DROP,
+                Math.min(target.getY() - SafeLanding.SEARCH_DOWN, lowestSurface));
+        int minY = Math.max(level.getMinBuildHeight(), bottom - 1);
+        int maxY = Math.min(level.getMaxBuildHeight() - 1, target.getY() + SafeLanding.SEARCH_UP + 1);
+        if (minY > maxY) {
+            return null;
+        }
+
+        int minSectionX = SectionPos.blockToSectionCoord(target.getX() - radius);
+        int minSectionY = SectionPos.blockToSectionCoord(minY);
+        int minSectionZ = SectionPos.blockToSectionCoord(target.getZ() - radius);
+        int sectionsX = SectionPos.blockToSectionCoord(target.getX() + radius) - minSectionX + 1;
+        int sectionsY = SectionPos.blockToSectionCoord(maxY) - minSectionY + 1;
+        int sectionsZ = SectionPos.blockToSectionCoord(target.getZ() + radius) - minSectionZ + 1;
+
+        PalettedContainer<BlockState>[] sections = new PalettedContainer[sectionsX * sectionsY * sectionsZ];
+
+        for (int sx = 0; sx < sectionsX; sx++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                LevelChunk chunk = level.getChunkSource().getChunkNow(minSectionX + sx, minSectionZ + sz);
+                LevelChunkSection[] chunkSections = chunk.getSections();
+
+                for (int sy = 0; sy < sectionsY; sy++) {
+                    LevelChunkSection section = chunkSections[level.getSectionIndexFromSectionY(minSectionY + sy)];
+                    if (!section.hasOnlyAir()) {
+                        sections[(sx * sectionsZ + sz) * sectionsY + sy] = section.getStates().copy();
+                    }
+                }
+            }
+        }
+
+        return new LandingSnapshot(minSectionX, minSectionY, minSectionZ, sectionsX, sectionsY, sectionsZ,
+                sections, surface, minY, maxY);
+    }
+
+    /**
+     * Gets a block from the snapshot. Anything outside the copied area reads as air.
+     */
+    @Override
+    public BlockState getBlockState(int x, int y, int z) {
+        if (y < minY || y > maxY) {
+            return Blocks.AIR.defaultBlockState();
+        }
+
+        int sx = SectionPos.blockToSectionCoord(x) - minSectionX;
+        int sy = SectionPos.blockToSectionCoord(y) - minSectionY;
+        int sz = SectionPos.blockToSectionCoord(z) - minSectionZ;
+        if (sx < 0 || sx >= sectionsX || sz < 0 || sz >= sectionsZ) {
+            return Blocks.AIR.defaultBlockState();
+        }
+
+        PalettedContainer<BlockState> section = sections[(sx * sectionsZ + sz) * sectionsY + sy];
+        return section != null ? section.get(x & 15, y & 15, z & 15) : Blocks.AIR.defaultBlockState();
+    }
+
+    /**
+     * Gets the highest motion-blocking block of a searched column.
+     *
+     * @param column Index into SafeLanding.COLUMNS
+     */
+    int getSurface(int column) {
+        return surface[column];
+    }
+
+    /**
+     * Gets the lowest block height covered by the snapshot.
+     */
+    int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Passes the key of every chunk section covered by the snapshot.
+     */
+    void forEachSection(LongConsumer consumer) {
+        for (int sx = 0; sx < sectionsX; sx++) {
+            for (int sy = 0; sy < sectionsY; sy++) {
+                for (int sz = 0; sz < sectionsZ; sz++) {
+                    consumer.accept(SectionPos.asLong(minSectionX + sx, minSectionY + sy, minSectionZ + sz));
+                }
+            }
+        }
+    }
+}
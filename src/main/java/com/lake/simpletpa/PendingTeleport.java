@@ -0,0 +1,104 @@
+package com.lake.simpletpa;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.UUID;
+
+/**
+ * Represents a teleport waiting in the TeleportQueue for its execution slot.
+ */
+public class PendingTeleport {
+    private final ServerPlayer player;
+    private final UUID notifyUuid;
+    private final ServerLevel targetLevel;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final float pitch;
+    private final ChunkPos ticketChunk;
+    private final long warmupStartTime;
+    private long sequence;
+
+    /**
+     * Creates a new pending teleport.
+     *
+     * @param player          The player to teleport
+     * @param notifyUuid      UUID of the player to notify on arrival, or null
+     * @param targetLevel     Destination dimension
+     * @param x               Destination X coordinate
+     * @param y               Destination Y coordinate
+     * @param z               Destination Z coordinate
+     * @param yaw             Destination yaw rotation
+     * @param pitch           Destination pitch rotation
+     * @param ticketChunk     Chunk holding a preload ticket to release once done, or null
+     * @param warmupStartTime When the warmup started (millis), or 0 for instant teleports
+     */
+    public PendingTeleport(ServerPlayer player, UUID notifyUuid, ServerLevel targetLevel,
+            double x, double y, double z, float yaw, float pitch, ChunkPos ticketChunk,
+            long warmupStartTime) {
+        this.player = player;
+        this.notifyUuid = notifyUuid;
+        this.targetLevel = targetLevel;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.ticketChunk = ticketChunk;
+        this.warmupStartTime = warmupStartTime;
+    }
+
+    public ServerPlayer getPlayer() {
+        return player;
+    }
+
+    public UUID getNotifyUuid() {
+        return notifyUuid;
+    }
+
+    public ServerLevel getTargetLevel() {
+        return targetLevel;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public ChunkPos getTicketChunk() {
+        return ticketChunk;
+    }
+
+    public long getWarmupStartTime() {
+        return warmupStartTime;
+    }
+
+    /**
+     * Gets the position of this teleport in the queue's FIFO order.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+}
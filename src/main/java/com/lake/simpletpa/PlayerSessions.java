@@ -0,0 +1,114 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.util.NameTrie;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton registry of the players currently online.
+ * Holds the live ServerPlayer of every session, kept up to date on login,
+ * respawn and logout, so hot paths resolve players with a single map lookup
+ * instead of going through the server's player list.
+ * Also indexes the names of every player that can receive a request, on
+ * this node or elsewhere in the network, for lookups and tab completion.
+ */
+public class PlayerSessions {
+    private static final PlayerSessions INSTANCE = new PlayerSessions();
+    private final Map<UUID, ServerPlayer> players;
+    // Local players are indexed here, remote players by TpaNetwork
+    private final NameTrie names;
+
+    private PlayerSessions() {
+        this.players = new ConcurrentHashMap<>();
+        this.names = new NameTrie();
+    }
+
+    /**
+     * Gets the singleton instance of PlayerSessions.
+     */
+    public static PlayerSessions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Forgets every session.
+     * Called when the server stops.
+     */
+    public void clear() {
+        players.clear();
+        names.clear();
+    }
+
+    /**
+     * Gets the player entity of an online player.
+     * 
+     * @param playerUuid UUID of the player
+     * @return The player, or null if offline
+     */
+    public ServerPlayer get(UUID playerUuid) {
+        return players.get(playerUuid);
+    }
+
+    /**
+     * Checks whether a player is online.
+     * 
+     * @param playerUuid UUID of the player
+     * @return true if the player has an active session
+     */
+    public boolean isOnline(UUID playerUuid) {
+        return players.containsKey(playerUuid);
+    }
+
+    /**
+     * Gets the players currently online.
+     */
+    public Collection<ServerPlayer> getPlayers() {
+        return players.values();
+    }
+
+    /**
+     * Gets the name index of the players reachable from this node.
+     */
+    public NameTrie getNames() {
+        return names;
+    }
+
+    /**
+     * Gets the number of online players.
+     */
+    public int size() {
+        return players.size();
+    }
+
+    // Registered first so the other managers already see the session
+    @SubscribeEvent(priority = EventPriority.HIGHEST)
+    public void onLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            players.put(player.getUUID(), player);
+            names.put(player.getGameProfile().getName(), player.getUUID());
+        }
+    }
+
+    // Respawning replaces the player entity
+    @SubscribeEvent(priority = EventPriority.HIGHEST)
+    public void onRespawn(PlayerEvent.PlayerRespawnEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            players.put(player.getUUID(), player);
+        }
+    }
+
+    // Removed last so the other managers can still resolve the player
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (players.remove(event.getEntity().getUUID(), event.getEntity())) {
+            names.remove(event.getEntity().getGameProfile().getName(), event.getEntity().getUUID());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.lake.simpletpa;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Singleton resolver that moves teleport destinations to a safe spot nearby.
+ * A destination is safe when the player stands on a solid, harmless block with
+ * room for feet and head and no fluid. Destinations in the air are lowered to
+ * the ground below them.
+ * The area is copied on the server thread, searched on a background thread
+ * (during the warmup, or before an instant teleport is queued), and the result
+ * is checked again against the live world on the server thread before it is used.
+ * Results are cached per destination block and dropped when a block changes
+ * in one of the chunk sections they were computed from.
+ */
+public class SafeLanding {
+    private static final SafeLanding INSTANCE = new SafeLanding();
+
+    // Search box around the destination, in blocks
+    static final int SEARCH_RADIUS = 2;
+    static final int SEARCH_DOWN = 8;
+    static final int SEARCH_UP = 8;
+    // Furthest a destination in the air is lowered to reach the ground
+    static final int MAX_DROP = 64;
+
+    // Columns of the search box, nearest first
+    static final int[][] COLUMNS = columns();
+    // Every position of the search box relative to the destination, nearest first
+    private static final int[][] OFFSETS = offsets();
+
+    // Cached "no safe spot nearby" result
+    private static final long NONE = Long.MAX_VALUE;
+    private static final int MAX_CACHED = 4096;
+
+    // Server thread only
+    private final Map<ResourceKey<Level>, LevelCache> caches;
+
+    /**
+     * Read access to blocks, backed by a snapshot or by the live world.
+     */
+    interface BlockSource {
+        BlockState getBlockState(int x, int y, int z);
+    }
+
+    private SafeLanding() {
+        this.caches = new HashMap<>();
+    }
+
+    /**
+     * Gets the singleton instance of SafeLanding.
+     */
+    public static SafeLanding getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drops all cached results.
+     * Called when the server stops.
+     */
+    public void clear() {
+        caches.clear();
+    }
+
+    /**
+     * Starts looking for a safe spot near a destination.
+     * Completes right away on a cache hit, when the feature is disabled or
+     * when the destination chunk is not loaded (keeping the destination).
+     * The future always completes on the server thread.
+     *
+     * @param level  Destination dimension
+     * @param target Destination coordinates
+     * @return Future holding the position to teleport to
+     */
+    public CompletableFuture<Vec3> resolve(ServerLevel level, Vec3 target) {
+        if (!TpaSettings.get().safeLanding) {
+            return CompletableFuture.completedFuture(target);
+        }
+
+        MinecraftServer server = level.getServer();
+        if (!server.isSameThread()) {
+            return CompletableFuture.supplyAsync(() -> resolve(level, target), server)
+                    .thenCompose(future -> future);
+        }
+
+        BlockPos targetBlock = BlockPos.containing(target);
+        Vec3 cached = getCached(level, target, targetBlock);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        LandingSnapshot snapshot = LandingSnapshot.capture(level, targetBlock);
+        if (snapshot == null) {
+            return CompletableFuture.completedFuture(target);
+        }
+
+        return CompletableFuture.supplyAsync(() -> search(snapshot, targetBlock), Util.backgroundExecutor())
+                .thenApplyAsync(found -> accept(level, target, targetBlock, snapshot, found), server);
+    }
+
+    /**
+     * Drops cached results computed from the chunk section of a changed block.
+     */
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (caches.isEmpty() || !(event.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+
+        LevelCache cache = caches.get(level.dimension());
+        if (cache != null) {
+            cache.invalidate(SectionPos.asLong(event.getPos()));
+        }
+    }
+
+    /**
+     * Looks up a cached result and checks it still holds.
+     *
+     * @return The position to teleport to, or null on a cache miss
+     */
+    private Vec3 getCached(ServerLevel level, Vec3 target, BlockPos targetBlock) {
+        LevelCache cache = caches.get(level.dimension());
+        if (cache == null) {
+            return null;
+        }
+
+        long landing = cache.results.get(targetBlock.asLong());
+        if (landing == NONE) {
+            return target;
+        }
+        if (landing == LevelCache.MISSING) {
+            return null;
+        }
+
+        BlockPos landingBlock = BlockPos.of(landing);
+        if (!isSafe(live(level), landingBlock.getX(), landingBlock.getY(), landingBlock.getZ())) {
+            cache.results.remove(targetBlock.asLong());
+            return null;
+        }
+        return toPosition(target, targetBlock, landingBlock);
+    }
+
+    /**
+     * Checks a search result against the live world and caches it.
+     * Runs on the server thread.
+     */
+    private Vec3 accept(ServerLevel level, Vec3 target, BlockPos targetBlock, LandingSnapshot snapshot,
+            BlockPos found) {
+        // The world changed since the snapshot, keep the destination this time
+        if (found != null && !isSafe(live(level), found.getX(), found.getY(), found.getZ())) {
+            return target;
+        }
+
+        LevelCache cache = caches.computeIfAbsent(level.dimension(), key -> new LevelCache());
+        cache.put(targetBlock.asLong(), found != null ? found.asLong() : NONE, snapshot);
+
+        return found != null ? toPosition(target, targetBlock, found) : target;
+    }
+
+    /**
+     * Keeps the exact destination when its own block is safe, otherwise
+     * lands on the center of the safe block.
+     */
+    private static Vec3 toPosition(Vec3 target, BlockPos targetBlock, BlockPos landing) {
+        return landing.equals(targetBlock) ? target : Vec3.atBottomCenterOf(landing);
+    }
+
+    /**
+     * Searches a snapshot for the nearest safe spot.
+     * Thread-safe, only reads the snapshot.
+     *
+     * @return The block to stand in, or null if there is none nearby
+     */
+    static BlockPos search(LandingSnapshot snapshot, BlockPos target) {
+        int x = target.getX();
+        int y = target.getY();
+        int z = target.getZ();
+
+        for (int[] offset : OFFSETS) {
+            if (isSafe(snapshot, x + offset[0], y + offset[1], z + offset[2])) {
+                return new BlockPos(x + offset[0], y + offset[1], z + offset[2]);
+            }
+        }
+
+        // Destination in the air: stand on the ground below it
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int groundY = snapshot.getSurface(i) + 1;
+            if (groundY < y && groundY > snapshot.getMinY()
+                    && isSafe(snapshot, x + COLUMNS[i][0], groundY, z + COLUMNS[i][1])) {
+                return new BlockPos(x + COLUMNS[i][0], groundY, z + COLUMNS[i][1]);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether a player can stand with their feet in the given block.
+     */
+    static boolean isSafe(BlockSource blocks, int x, int y, int z) {
+        return isSolidFloor(blocks.getBlockState(x, y - 1, z))
+                && isPassable(blocks.getBlockState(x, y, z))
+                && isPassable(blocks.getBlockState(x, y + 1, z));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isSolidFloor(BlockState state) {
+        return state.blocksMotion() && !isHazard(state);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isPassable(BlockState state) {
+        return !state.blocksMotion() && state.getFluidState().isEmpty() && !isHazard(state);
+    }
+
+    private static boolean isHazard(BlockState state) {
+        return state.is(BlockTags.FIRE)
+                || state.is(BlockTags.CAMPFIRES)
+                || state.is(Blocks.MAGMA_BLOCK)
+                || state.is(Blocks.CACTUS)
+                || state.is(Blocks.SWEET_BERRY_BUSH)
+                || state.is(Blocks.WITHER_ROSE)
+                || state.is(Blocks.POWDER_SNOW)
+                || state.is(Blocks.POINTED_DRIPSTONE)
+                || state.is(Blocks.COBWEB);
+    }
+
+    private static BlockSource live(ServerLevel level) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        return (x, y, z) -> level.getBlockState(pos.set(x, y, z));
+    }
+
+    private static int[][] columns() {
+        List<int[]> columns = new ArrayList<>();
+        for (int dx = -SEARCH_RADIUS; dx <= SEARCH_RADIUS; dx++) {
+            for (int dz = -SEARCH_RADIUS; dz <= SEARCH_RADIUS; dz++) {
+                columns.add(new int[] { dx, dz });
+            }
+        }
+        columns.sort(Comparator.comparingInt(c -> c[0] * c[0] + c[1] * c[1]));
+        return columns.toArray(new int[0][]);
+    }
+
+    private static int[][] offsets() {
+        List<int[]> offsets = new ArrayList<>();
+        for (int[] column : columns()) {
+            for (int dy = -SEARCH_DOWN; dy <= SEARCH_UP; dy++) {
+                offsets.add(new int[] { column[0], dy, column[1] });
+            }
+        }
+        // Stable sort: the destination itself comes first
+        offsets.sort(Comparator.comparingInt(o -> o[0] * o[0] + o[1] * o[1] + o[2] * o[2]));
+        return offsets.toArray(new int[0][]);
+    }
+
+    /**
+     * Results for one dimension, indexed by the chunk sections they were computed from.
+     */
+    private static final class LevelCache {
+        static final long MISSING = Long.MIN_VALUE;
+
+        // Destination block -> landing block (or NONE)
+        final Long2LongOpenHashMap results;
+        // Section -> destination blocks whose result read it
+        final Long2ObjectOpenHashMap<LongArrayList> bySection;
+
+        LevelCache() {
+            this.results = new Long2LongOpenHashMap();
+            this.results.defaultReturnValue(MISSING);
+            this.bySection = new Long2ObjectOpenHashMap<>();
+        }
+
+        void put(long target, long landing, LandingSnapshot snapshot) {
+            if (results.size() >= MAX_CACHED) {
+                results.clear();
+                bySection.clear();
+            }
+
+            results.put(target, landing);
+            snapshot.forEachSection(section -> bySection
+                    .computeIfAbsent(section, key -> new LongArrayList())
+                    .add(target));
+        }
+
+        void invalidate(long section) {
+            LongArrayList targets = bySection.remove(section);
+            if (targets != null) {
+                for (int i = 0; i < targets.size(); i++) {
+                    results.remove(targets.getLong(i));
+                }
+            }
+        }
+    }
+}
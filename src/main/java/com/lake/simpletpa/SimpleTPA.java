@@ -1,13 +1,27 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.audit.AuditLog;
 import com.lake.simpletpa.commands.TpaCommands;
+import com.lake.simpletpa.network.TpaNetwork;
+import com.lake.simpletpa.stats.AllocationMeter;
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerAboutToStartEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.server.ServerLifecycleHooks;
+
+import java.nio.file.Path;
 
 /**
  * Main mod class for SimpleTPA.
@@ -20,8 +34,46 @@ public class SimpleTPA {
         // Register configuration (COMMON type for global settings)
         ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, TpaConfig.SPEC, "simpletpa-common.toml");
 
+        // Recompile message templates whenever the config is (re)loaded
+        FMLJavaModLoadingContext.get().getModEventBus().addListener(this::onConfigLoading);
+        FMLJavaModLoadingContext.get().getModEventBus().addListener(this::onConfigReloading);
+
         // Register this class to the event bus
         MinecraftForge.EVENT_BUS.register(this);
+
+        // Sessions, request cleanup and warmup cancellation are driven by player events
+        MinecraftForge.EVENT_BUS.register(PlayerSessions.getInstance());
+        MinecraftForge.EVENT_BUS.register(TpaManager.getInstance());
+        MinecraftForge.EVENT_BUS.register(WarmupManager.getInstance());
+        MinecraftForge.EVENT_BUS.register(BackHistory.getInstance());
+        MinecraftForge.EVENT_BUS.register(AuditLog.getInstance());
+
+        // Presence and request hand-off for proxy networks
+        MinecraftForge.EVENT_BUS.register(TpaNetwork.getInstance());
+
+        // Cached landing spots are invalidated by block updates
+        MinecraftForge.EVENT_BUS.register(SafeLanding.getInstance());
+    }
+
+    private void onConfigLoading(ModConfigEvent.Loading event) {
+        if (event.getConfig().getSpec() == TpaConfig.SPEC) {
+            TpaSettings.reload();
+        }
+    }
+
+    private void onConfigReloading(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() == TpaConfig.SPEC) {
+            TpaSettings.reload();
+
+            // Outside a running server the log is opened on the next start
+            if (ServerLifecycleHooks.getCurrentServer() != null) {
+                AuditLog.getInstance().apply(auditDirectory(), TpaSettings.get());
+            }
+        }
+    }
+
+    private static Path auditDirectory() {
+        return FMLPaths.GAMEDIR.get().resolve("logs").resolve("simpletpa");
     }
 
     /**
@@ -32,25 +84,85 @@ public class SimpleTPA {
         TpaCommands.register(event.getDispatcher());
     }
 
+    /**
+     * Picks the configured clock and opens the audit log before any request
+     * or warmup is created.
+     */
+    @SubscribeEvent
+    public void onServerAboutToStart(ServerAboutToStartEvent event) {
+        TpaSettings settings = TpaSettings.get();
+        TpaClock.use(settings.clockSource == TpaConfig.ClockSource.TICKS
+                ? new TpaClock.Ticks()
+                : new TpaClock.Wall());
+
+        AuditLog.getInstance().apply(auditDirectory(), settings);
+    }
+
+    /**
+     * Drops all in-memory state when the server stops.
+     */
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent event) {
+        TpaManager.getInstance().clear();
+        WarmupManager.getInstance().clear();
+        TeleportQueue.getInstance().clear();
+        PlayerSessions.getInstance().clear();
+        SafeLanding.getInstance().clear();
+        BackHistory.getInstance().clear();
+        AuditLog.getInstance().close();
+        TpaNetwork.getInstance().disconnect();
+    }
+
     /**
      * Server tick event handler for cleaning up expired requests and checking
      * warmups.
-     * Checks once per second (every 20 ticks) to avoid performance impact.
+     * Runs every tick, only due entries are touched.
      */
     @SubscribeEvent
     public void onServerTick(TickEvent.ServerTickEvent event) {
-        // Only run on the END phase to avoid running twice per tick
-        if (event.phase != TickEvent.Phase.END) {
+        // Sample the clock once at the start of the tick, timers run at the END
+        if (event.phase == TickEvent.Phase.START) {
+            TpaClock.tick();
             return;
         }
 
-        // Only check once per second (20 ticks per second)
-        if (event.getServer().getTickCount() % 20 == 0) {
-            // Clean expired teleport requests
-            TpaManager.getInstance().cleanExpired(event.getServer());
+        runTick(event.getServer());
+    }
 
-            // Check warmup tasks (movement detection and completion)
-            WarmupManager.getInstance().checkWarmups(event.getServer());
-        }
+    /**
+     * Runs the mod's end-of-tick work.
+     * Allocates nothing on ticks where no request expires, no warmup
+     * completes, no teleport is queued and no network traffic arrives; the
+     * bytes allocated are recorded in TpaStats so regressions show up in
+     * /tpa stats.
+     * Must be called from the server thread, once per tick.
+     *
+     * @param server The Minecraft server instance
+     */
+    public static void runTick(MinecraftServer server) {
+        TpaStats stats = TpaStats.getInstance();
+        TpaNetwork network = TpaNetwork.getInstance();
+        long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+
+        // Apply what other nodes sent since the last tick
+        network.processIncoming();
+
+        // Clean expired teleport requests
+        long start = System.nanoTime();
+        TpaManager.getInstance().cleanExpired(server);
+        long cleaned = System.nanoTime();
+        stats.cleanExpiredTime.record(cleaned - start);
+
+        // Complete warmup tasks that are due
+        WarmupManager.getInstance().checkWarmups(server);
+        stats.checkWarmupsTime.record(System.nanoTime() - cleaned);
+
+        // Run queued teleports within this tick's budget
+        TeleportQueue.getInstance().processQueue(server);
+
+        // Send this tick's messages to other nodes as one batch
+        network.flush();
+
+        stats.tickAllocatedBytes.record(AllocationMeter.currentThreadAllocatedBytes() - allocatedBefore);
     }
 }
@@ -0,0 +1,191 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.audit.AuditLog;
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.MessageTemplates;
+import com.lake.simpletpa.util.MessageUtils;
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Singleton admission queue in front of every teleport.
+ * Executes at most a configured number of teleports (or nanoseconds) per tick,
+ * deferring the overflow to later ticks in FIFO order so a burst of finished
+ * warmups does not land on a single tick.
+ * Teleports can be queued from any thread; they only run on the server thread.
+ */
+public class TeleportQueue {
+    private static final TeleportQueue INSTANCE = new TeleportQueue();
+    // Teleports queued since the last tick, moved into the FIFO queue by the server thread
+    private final Queue<PendingTeleport> incoming;
+    private final Deque<PendingTeleport> queue;
+    // Reused every tick to hold the teleports admitted for that tick
+    private final List<PendingTeleport> batch;
+    private long nextSequence;
+
+    // Groups a tick's teleports by destination dimension (List.sort is stable)
+    private static final Comparator<PendingTeleport> BY_LEVEL = Comparator
+            .comparing(teleport -> teleport.getTargetLevel().dimension().location());
+    private static final Comparator<PendingTeleport> BY_SEQUENCE = Comparator
+            .comparingLong(PendingTeleport::getSequence);
+
+    // Average MSPT above which the per-tick budget is halved
+    private static final float BUSY_MSPT = 40.0F;
+
+    private TeleportQueue() {
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.queue = new ArrayDeque<>();
+        this.batch = new ArrayList<>();
+    }
+
+    /**
+     * Gets the singleton instance of TeleportQueue.
+     */
+    public static TeleportQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drops all queued teleports.
+     * Called when the server stops.
+     */
+    public void clear() {
+        incoming.clear();
+        queue.clear();
+        batch.clear();
+    }
+
+    /**
+     * Queues a teleport for execution on a following tick.
+     *
+     * @param teleport The teleport to queue
+     */
+    public void enqueue(PendingTeleport teleport) {
+        incoming.offer(teleport);
+    }
+
+    /**
+     * Gets the number of teleports waiting for an execution slot.
+     * Only accurate when called from the server thread.
+     */
+    public int size() {
+        return queue.size() + incoming.size();
+    }
+
+    /**
+     * Executes queued teleports within this tick's budget.
+     * At least one teleport runs per tick so the queue always drains.
+     * Must be called from the server thread.
+     *
+     * @param server The Minecraft server instance
+     */
+    public void processQueue(MinecraftServer server) {
+        PendingTeleport teleport;
+
+        while ((teleport = incoming.poll()) != null) {
+            teleport.setSequence(nextSequence++);
+            queue.addLast(teleport);
+        }
+
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        TpaSettings settings = TpaSettings.get();
+        int maxCount = settings.maxTeleportsPerTick;
+        long budgetNanos = settings.teleportTickBudgetNanos;
+
+        // Back off while the server is already behind
+        if (server.getAverageTickTime() > BUSY_MSPT) {
+            maxCount = maxCount > 0 ? Math.max(1, maxCount / 2) : 0;
+            budgetNanos /= 2;
+        }
+
+        int admitted = maxCount > 0 ? Math.min(maxCount, queue.size()) : queue.size();
+        for (int i = 0; i < admitted; i++) {
+            batch.add(queue.pollFirst());
+        }
+
+        if (batch.size() > 1) {
+            batch.sort(BY_LEVEL);
+        }
+
+        long start = System.nanoTime();
+        int executed = 0;
+
+        while (executed < batch.size()
+                && (executed == 0 || budgetNanos <= 0 || System.nanoTime() - start < budgetNanos)) {
+            execute(batch.get(executed));
+            executed++;
+        }
+
+        // Out of time: put the rest back at the front, in their original order
+        if (executed < batch.size()) {
+            List<PendingTeleport> deferred = batch.subList(executed, batch.size());
+            deferred.sort(BY_SEQUENCE);
+            for (int i = deferred.size() - 1; i >= 0; i--) {
+                queue.addFirst(deferred.get(i));
+            }
+        }
+
+        batch.clear();
+    }
+
+    /**
+     * Executes a single teleport and notifies the players involved.
+     * If the player left (or respawned) while queued, the other player is
+     * told they are gone instead. The chunk ticket is released either way.
+     */
+    private void execute(PendingTeleport teleport) {
+        ServerPlayer player = teleport.getPlayer();
+        ServerPlayer other = teleport.getNotifyUuid() != null
+                ? PlayerSessions.getInstance().get(teleport.getNotifyUuid())
+                : null;
+
+        try {
+            if (player.isRemoved() || player.hasDisconnected()) {
+                if (other != null) {
+                    MessageUtils.send(other, MessageTemplates.get(other).playerOffline);
+                }
+                return;
+            }
+
+            TpaStats stats = TpaStats.getInstance();
+            long start = System.nanoTime();
+
+            BackHistory.getInstance().record(player);
+            player.teleportTo(teleport.getTargetLevel(),
+                    teleport.getX(), teleport.getY(), teleport.getZ(),
+                    teleport.getYaw(), teleport.getPitch());
+
+            stats.teleportTime.record(System.nanoTime() - start);
+            stats.teleports.increment();
+            AuditLog.getInstance().teleport(player, teleport.getNotifyUuid(), teleport.getTargetLevel().dimension(),
+                    teleport.getX(), teleport.getY(), teleport.getZ());
+            if (teleport.getWarmupStartTime() > 0) {
+                stats.warmupToTeleport.record((TpaClock.now() - teleport.getWarmupStartTime()) * 1_000_000L);
+            }
+
+            // Send success messages
+            MessageUtils.send(player, MessageTemplates.get(player).teleporting);
+
+            // Notify target player
+            if (other != null) {
+                MessageUtils.send(other, MessageTemplates.get(other).teleporting, player.getName().getString());
+            }
+        } finally {
+            if (teleport.getTicketChunk() != null) {
+                WarmupManager.releaseChunks(teleport.getTargetLevel(), teleport.getTicketChunk());
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.util.TpaClock;
+
 import java.util.UUID;
 
 /**
@@ -9,6 +11,7 @@ public class TeleportRequest {
     private final UUID sender;
     private final UUID target;
     private final RequestType type;
+    private final long createdTime;
     private final long expirationTime;
 
     /**
@@ -19,12 +22,24 @@ public class TeleportRequest {
      * @param type   The type of teleport (TPA or TPA_HERE)
      */
     public TeleportRequest(UUID sender, UUID target, RequestType type) {
+        this(sender, target, type, TpaSettings.get());
+    }
+
+    /**
+     * Creates a new teleport request, taking its expiry from a given snapshot.
+     * 
+     * @param sender   The UUID of the player who initiated the request
+     * @param target   The UUID of the player who receives the request
+     * @param type     The type of teleport (TPA or TPA_HERE)
+     * @param settings Settings snapshot the caller is working with
+     */
+    public TeleportRequest(UUID sender, UUID target, RequestType type, TpaSettings settings) {
         this.sender = sender;
         this.target = target;
         this.type = type;
         // Request expires based on configuration
-        int expirationSeconds = TpaConfig.GENERAL.requestExpiration.get();
-        this.expirationTime = System.currentTimeMillis() + (expirationSeconds * 1000L);
+        this.createdTime = TpaClock.now();
+        this.expirationTime = createdTime + settings.requestExpirationMs;
     }
 
     public UUID getSender() {
@@ -39,6 +54,10 @@ public class TeleportRequest {
         return type;
     }
 
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
     public long getExpirationTime() {
         return expirationTime;
     }
@@ -49,6 +68,6 @@ public class TeleportRequest {
      * @return true if the current time is past the expiration time
      */
     public boolean isExpired() {
-        return System.currentTimeMillis() > expirationTime;
+        return TpaClock.now() > expirationTime;
     }
 }
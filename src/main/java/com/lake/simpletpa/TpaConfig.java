@@ -1,5 +1,6 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.util.LangBundle;
 import net.minecraftforge.common.ForgeConfigSpec;
 
 /**
@@ -28,6 +29,20 @@ public class TpaConfig {
                 public final ForgeConfigSpec.IntValue requestExpiration;
                 public final ForgeConfigSpec.IntValue teleportWarmup;
                 public final ForgeConfigSpec.IntValue cooldown;
+                public final ForgeConfigSpec.IntValue maxPendingPerTarget;
+                public final ForgeConfigSpec.IntValue senderRequestsPerMinute;
+                public final ForgeConfigSpec.IntValue senderRequestBurst;
+                public final ForgeConfigSpec.IntValue targetRequestsPerMinute;
+                public final ForgeConfigSpec.IntValue targetRequestBurst;
+                public final ForgeConfigSpec.BooleanValue preloadChunks;
+                public final ForgeConfigSpec.BooleanValue waitForChunks;
+                public final ForgeConfigSpec.BooleanValue safeLanding;
+                public final ForgeConfigSpec.IntValue maxTeleportsPerTick;
+                public final ForgeConfigSpec.IntValue teleportTickBudgetMicros;
+                public final ForgeConfigSpec.IntValue backHistorySize;
+                public final ForgeConfigSpec.BooleanValue auditLog;
+                public final ForgeConfigSpec.IntValue auditMaxFileMb;
+                public final ForgeConfigSpec.EnumValue<ClockSource> clockSource;
 
                 public General(ForgeConfigSpec.Builder builder) {
                         builder.comment("General Settings")
@@ -48,10 +63,96 @@ public class TpaConfig {
                                                         "Range: >= 0")
                                         .defineInRange("cooldown", 0, 0, 300);
 
+                        maxPendingPerTarget = builder
+                                        .comment("Máximo de solicitudes pendientes que puede tener un jugador a la vez",
+                                                        "Al superarlo se descarta la más antigua.",
+                                                        "Range: 1 ~ 50")
+                                        .defineInRange("maxPendingPerTarget", 5, 1, 50);
+
+                        senderRequestsPerMinute = builder
+                                        .comment("Solicitudes por minuto que puede enviar un jugador (0 = sin límite)",
+                                                        "Los intentos que superan el límite se descartan; el jugador recibe",
+                                                        "el mensaje requestFlooded como mucho una vez por intervalo.",
+                                                        "Range: 0 ~ 600")
+                                        .defineInRange("senderRequestsPerMinute", 20, 0, 600);
+
+                        senderRequestBurst = builder
+                                        .comment("Solicitudes seguidas que puede enviar un jugador antes de aplicar el límite",
+                                                        "Range: 1 ~ 100")
+                                        .defineInRange("senderRequestBurst", 5, 1, 100);
+
+                        targetRequestsPerMinute = builder
+                                        .comment("Solicitudes por minuto que puede recibir un jugador (0 = sin límite)",
+                                                        "Range: 0 ~ 600")
+                                        .defineInRange("targetRequestsPerMinute", 30, 0, 600);
+
+                        targetRequestBurst = builder
+                                        .comment("Solicitudes seguidas que puede recibir un jugador antes de aplicar el límite",
+                                                        "Range: 1 ~ 100")
+                                        .defineInRange("targetRequestBurst", 10, 1, 100);
+
+                        preloadChunks = builder
+                                        .comment("Cargar el chunk de destino en segundo plano durante el warmup")
+                                        .define("preloadChunks", true);
+
+                        waitForChunks = builder
+                                        .comment("Esperar a que el chunk de destino esté cargado antes de teletransportar",
+                                                        "(también en teletransportes instantáneos) para evitar cargas síncronas")
+                                        .define("waitForChunks", true);
+
+                        safeLanding = builder
+                                        .comment("Buscar una posición segura cerca del destino si el jugador de destino",
+                                                        "está en el aire, en lava o dentro de un bloque")
+                                        .define("safeLanding", true);
+
+                        maxTeleportsPerTick = builder
+                                        .comment("Máximo de teletransportes ejecutados por tick (0 = sin límite)",
+                                                        "El resto se ejecuta en los ticks siguientes en orden de llegada.",
+                                                        "Se reduce a la mitad cuando el servidor va lento (MSPT > 40).",
+                                                        "Range: 0 ~ 1000")
+                                        .defineInRange("maxTeleportsPerTick", 10, 0, 1000);
+
+                        teleportTickBudgetMicros = builder
+                                        .comment("Tiempo máximo en microsegundos dedicado a teletransportes por tick (0 = sin límite)",
+                                                        "Siempre se ejecuta al menos un teletransporte por tick.",
+                                                        "Range: 0 ~ 50000")
+                                        .defineInRange("teleportTickBudgetMicros", 10000, 0, 50000);
+
+                        backHistorySize = builder
+                                        .comment("Ubicaciones anteriores que se guardan por jugador para /back",
+                                                        "Range: 1 ~ 50")
+                                        .defineInRange("backHistorySize", 5, 1, 50);
+
+                        auditLog = builder
+                                        .comment("Guardar un registro binario de solicitudes y teletransportes en logs/simpletpa",
+                                                        "Se consulta con: java -cp simpletpa.jar com.lake.simpletpa.audit.AuditLogReader",
+                                                        "Se aplica al iniciar el servidor y al recargar la configuración.")
+                                        .define("auditLog", true);
+
+                        auditMaxFileMb = builder
+                                        .comment("Tamaño en MB a partir del cual el registro continúa en un archivo nuevo",
+                                                        "Range: 1 ~ 1024")
+                                        .defineInRange("auditMaxFileMb", 64, 1, 1024);
+
+                        clockSource = builder
+                                        .comment("Reloj usado para expiraciones, warmups y cooldowns",
+                                                        "  WALL  - Tiempo real.",
+                                                        "  TICKS - Ticks del servidor (20 por segundo); con lag los tiempos se alargan.",
+                                                        "Se aplica al iniciar el servidor.")
+                                        .defineEnum("clockSource", ClockSource.WALL);
+
                         builder.pop();
                 }
         }
 
+        /**
+         * Time sources selectable for TpaClock.
+         */
+        public enum ClockSource {
+                WALL,
+                TICKS
+        }
+
         /**
          * Messages configuration category for customizable text.
          * Supports Minecraft color codes using & symbol.
@@ -63,8 +164,11 @@ public class TpaConfig {
                 public final ForgeConfigSpec.ConfigValue<String> teleporting;
                 public final ForgeConfigSpec.ConfigValue<String> warmupStart;
                 public final ForgeConfigSpec.ConfigValue<String> warmupCancelled;
+                public final ForgeConfigSpec.ConfigValue<String> warmupCancelledDamage;
                 public final ForgeConfigSpec.ConfigValue<String> requestExpired;
                 public final ForgeConfigSpec.ConfigValue<String> requestDenied;
+                public final ForgeConfigSpec.ConfigValue<String> requestCancelled;
+                public final ForgeConfigSpec.ConfigValue<String> requestCancelledTarget;
                 public final ForgeConfigSpec.ConfigValue<String> noRequest;
                 public final ForgeConfigSpec.ConfigValue<String> playerOffline;
                 public final ForgeConfigSpec.ConfigValue<String> cannotTeleportSelf;
@@ -73,11 +177,25 @@ public class TpaConfig {
                 public final ForgeConfigSpec.ConfigValue<String> toggleEnabled;
                 public final ForgeConfigSpec.ConfigValue<String> toggleDisabled;
                 public final ForgeConfigSpec.ConfigValue<String> targetIgnoring;
+                public final ForgeConfigSpec.ConfigValue<String> transferFailed;
+                public final ForgeConfigSpec.ConfigValue<String> groupRequestSent;
+                public final ForgeConfigSpec.ConfigValue<String> noGroupTargets;
+                public final ForgeConfigSpec.ConfigValue<String> noBackLocation;
+                public final ForgeConfigSpec.ConfigValue<String> requestFlooded;
+                public final ForgeConfigSpec.ConfigValue<String> language;
 
                 public Messages(ForgeConfigSpec.Builder builder) {
                         builder.comment("Mensajes personalizables (usa & para códigos de color)")
                                         .push("messages");
 
+                        language = builder
+                                        .comment("Idioma de los mensajes de esta sección (código de idioma de Minecraft, ej: es_es, en_us).",
+                                                        "Los jugadores con el cliente en otro idioma reciben los textos de assets/simpletpa/lang",
+                                                        "si existe ese idioma; si no, los de esta sección. Los mensajes cambiados respecto",
+                                                        "al valor por defecto se usan en todos los idiomas.")
+                                        .define("language", "es_es", value -> value instanceof String locale
+                                                        && LangBundle.isValidLocale(locale));
+
                         requestSent = builder
                                         .comment("Mensaje enviado al jugador que inicia el comando /tpa.",
                                                         "Placeholders:",
@@ -111,6 +229,10 @@ public class TpaConfig {
                                         .comment("Mensaje cuando se cancela el warmup por movimiento.")
                                         .define("warmupCancelled", "&cTe has movido. Teletransporte cancelado.");
 
+                        warmupCancelledDamage = builder
+                                        .comment("Mensaje cuando se cancela el warmup por recibir daño.")
+                                        .define("warmupCancelledDamage", "&cHas recibido daño. Teletransporte cancelado.");
+
                         requestExpired = builder
                                         .comment("Mensaje cuando expira una solicitud.")
                                         .define("requestExpired", "&cLa solicitud de teletransporte ha expirado.");
@@ -119,6 +241,18 @@ public class TpaConfig {
                                         .comment("Mensaje cuando se rechaza una solicitud.")
                                         .define("requestDenied", "&cSolicitud de teletransporte denegada.");
 
+                        requestCancelled = builder
+                                        .comment("Mensaje al cancelar una solicitud enviada con /tpacancel.",
+                                                        "Placeholders:",
+                                                        "  %s - Nombre del jugador que iba a recibirla.")
+                                        .define("requestCancelled", "&eHas cancelado tu solicitud a &6%s&e.");
+
+                        requestCancelledTarget = builder
+                                        .comment("Mensaje al jugador cuya solicitud pendiente ha sido cancelada.",
+                                                        "Placeholders:",
+                                                        "  %s - Nombre del jugador que la cancela.")
+                                        .define("requestCancelledTarget", "&6%s &eha cancelado su solicitud de teletransporte.");
+
                         noRequest = builder
                                         .comment("Mensaje cuando no hay solicitudes pendientes.")
                                         .define("noRequest", "&cNo tienes solicitudes pendientes.");
@@ -160,6 +294,32 @@ public class TpaConfig {
                                         .define("targetIgnoring",
                                                         "&cEse jugador no está aceptando solicitudes de teletransporte.");
 
+                        transferFailed = builder
+                                        .comment("Mensaje cuando no se puede enviar al jugador a otro servidor de la red.")
+                                        .define("transferFailed",
+                                                        "&cNo se ha podido conectar con el servidor de ese jugador.");
+
+                        groupRequestSent = builder
+                                        .comment("Mensaje al enviar una solicitud /tpahere a un grupo de jugadores.",
+                                                        "Placeholders:",
+                                                        "  %d - Número de jugadores que la han recibido.")
+                                        .define("groupRequestSent", "&aSolicitud enviada a &6%d &ajugadores.");
+
+                        noGroupTargets = builder
+                                        .comment("Mensaje cuando ningún jugador del grupo puede recibir la solicitud.")
+                                        .define("noGroupTargets",
+                                                        "&cNinguno de esos jugadores puede recibir tu solicitud ahora mismo.");
+
+                        noBackLocation = builder
+                                        .comment("Mensaje cuando no hay una ubicación anterior a la que volver con /back.")
+                                        .define("noBackLocation", "&cNo hay ninguna ubicación anterior a la que volver.");
+
+                        requestFlooded = builder
+                                        .comment("Mensaje cuando se descartan solicitudes por enviar demasiadas seguidas.",
+                                                        "Se envía como mucho una vez por intervalo del límite.")
+                                        .define("requestFlooded",
+                                                        "&cEstás enviando demasiadas solicitudes. Espera un momento.");
+
                         builder.pop();
                 }
         }
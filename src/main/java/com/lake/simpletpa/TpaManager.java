@@ -1,105 +1,547 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.audit.AuditFormat;
+import com.lake.simpletpa.audit.AuditLog;
+import com.lake.simpletpa.network.TpaNetwork;
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.CooldownTable;
+import com.lake.simpletpa.util.MessageTemplates;
 import com.lake.simpletpa.util.MessageUtils;
+import com.lake.simpletpa.util.RateLimiter;
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.player.Player;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Singleton manager for handling all teleport requests.
  * Stores requests in memory (RAM) with no persistence.
+ * Requests can be added and removed from any thread: they live in
+ * concurrent collections and the expiry queue is only touched by the server
+ * thread. Cooldowns are confined to the server thread.
  */
 public class TpaManager {
-    private static TpaManager instance;
-    private final Map<UUID, TeleportRequest> pendingRequests;
-    private final Map<UUID, Long> cooldowns;
+    private static final TpaManager INSTANCE = new TpaManager();
+    // Pending requests per target, keyed by sender (bounded by maxPendingPerTarget)
+    private final Map<UUID, Map<UUID, TeleportRequest>> inboxes;
+    // The same requests indexed per sender, keyed by target
+    private final Map<UUID, Map<UUID, TeleportRequest>> outgoing;
+    // Requests added since the last tick, moved into the expiry queue by the server thread
+    private final Queue<TeleportRequest> newRequests;
+    // Requests ordered by expiration time, so expiry only touches requests that are due
+    private final PriorityQueue<TeleportRequest> expiryQueue;
+    // Cooldown deadlines; expired entries (also of players that left) are reclaimed lazily.
+    // Not thread-safe: only commands, logout and stats use it, all on the server thread
+    private final CooldownTable cooldowns;
+    // Ignore flags of online players; the flag itself is stored in the player's data
     private final Set<UUID> ignoringPlayers;
+    // Flood protection for sending and receiving requests
+    private final RateLimiter senderLimits;
+    private final RateLimiter targetLimits;
+    // One "too many requests" notice per sender and limit window
+    private final RateLimiter floodNotices;
+
+    private static final String IGNORING_TAG = "simpletpaIgnoring";
 
     private TpaManager() {
-        this.pendingRequests = new HashMap<>();
-        this.cooldowns = new HashMap<>();
-        this.ignoringPlayers = new HashSet<>();
+        this.inboxes = new ConcurrentHashMap<>();
+        this.outgoing = new ConcurrentHashMap<>();
+        this.newRequests = new ConcurrentLinkedQueue<>();
+        this.expiryQueue = new PriorityQueue<>(Comparator.comparingLong(TeleportRequest::getExpirationTime));
+        this.cooldowns = new CooldownTable();
+        this.ignoringPlayers = ConcurrentHashMap.newKeySet();
+        this.senderLimits = new RateLimiter();
+        this.targetLimits = new RateLimiter();
+        this.floodNotices = new RateLimiter();
     }
 
     /**
      * Gets the singleton instance of TpaManager.
      */
     public static TpaManager getInstance() {
-        if (instance == null) {
-            instance = new TpaManager();
+        return INSTANCE;
+    }
+
+    /**
+     * Drops all requests, cooldowns and ignore flags.
+     * Called when the server stops, so an integrated server starts clean.
+     */
+    public void clear() {
+        inboxes.clear();
+        outgoing.clear();
+        newRequests.clear();
+        expiryQueue.clear();
+        cooldowns.clear();
+        ignoringPlayers.clear();
+        senderLimits.clear();
+        targetLimits.clear();
+        floodNotices.clear();
+    }
+
+    /**
+     * Takes a token from the sender's and the target's rate limits.
+     * Meant to run before anything is built for the request, rejected
+     * attempts are only counted. Either both tokens are taken or neither.
+     * 
+     * @param senderUuid UUID of the player sending the request, or null if
+     *                   the sender's node already checked it
+     * @param targetUuid UUID of the player receiving it
+     * @return true if the request may go ahead
+     */
+    public boolean tryAcquireRequest(UUID senderUuid, UUID targetUuid) {
+        return tryAcquireRequest(senderUuid, targetUuid, TpaSettings.get());
+    }
+
+    /**
+     * Takes a token from the sender's and the target's rate limits, with the
+     * limits of a given settings snapshot.
+     * 
+     * @param senderUuid UUID of the player sending the request, or null if
+     *                   the sender's node already checked it
+     * @param targetUuid UUID of the player receiving it
+     * @param settings   Settings snapshot the caller is working with
+     * @return true if the request may go ahead
+     */
+    public boolean tryAcquireRequest(UUID senderUuid, UUID targetUuid, TpaSettings settings) {
+        long now = TpaClock.now();
+
+        if (senderUuid == null || senderLimits.tryAcquire(senderUuid, now, settings.senderRequestsPerMinute,
+                settings.senderRequestBurst)) {
+            if (targetLimits.tryAcquire(targetUuid, now, settings.targetRequestsPerMinute,
+                    settings.targetRequestBurst)) {
+                return true;
+            }
+            // A request the target's limit drops does not count against the sender
+            if (senderUuid != null) {
+                senderLimits.refund(senderUuid, settings.senderRequestsPerMinute);
+            }
         }
-        return instance;
+
+        TpaStats.getInstance().requestsDropped.increment();
+        return false;
     }
 
     /**
-     * Adds or updates a teleport request.
-     * The request is keyed by the target's UUID for easy lookup.
+     * Takes the sender's flood notice for the current limit window, so a
+     * player hammering the command is told once instead of on every attempt.
+     * The window is the sender's limit interval, or the target's when only
+     * that one is set.
+     * 
+     * @param senderUuid UUID of the player whose request was dropped
+     * @return true if the notice should be sent
+     */
+    public boolean tryAcquireFloodNotice(UUID senderUuid) {
+        return tryAcquireFloodNotice(senderUuid, TpaSettings.get());
+    }
+
+    /**
+     * Takes the sender's flood notice, with the limits of a given settings snapshot.
+     * 
+     * @param senderUuid UUID of the player whose request was dropped
+     * @param settings   Settings snapshot the caller is working with
+     * @return true if the notice should be sent
+     */
+    public boolean tryAcquireFloodNotice(UUID senderUuid, TpaSettings settings) {
+        int perMinute = settings.senderRequestsPerMinute > 0
+                ? settings.senderRequestsPerMinute
+                : settings.targetRequestsPerMinute;
+
+        return floodNotices.tryAcquire(senderUuid, TpaClock.now(), perMinute, 1);
+    }
+
+    /**
+     * Forgets the rate limits of a player who left, on this node or on
+     * another one (requests to remote players take their target bucket here).
+     * 
+     * @param playerUuid UUID of the player
+     */
+    public void removeLimits(UUID playerUuid) {
+        senderLimits.remove(playerUuid);
+        targetLimits.remove(playerUuid);
+        floodNotices.remove(playerUuid);
+    }
+
+    /**
+     * Adds a teleport request to the target's inbox.
+     * A new request from the same sender replaces the previous one; when the
+     * inbox is full the oldest request is dropped and its sender told it expired.
      * 
      * @param request The teleport request to add
      */
     public void addRequest(TeleportRequest request) {
-        pendingRequests.put(request.getTarget(), request);
+        addRequest(request, TpaSettings.get());
     }
 
     /**
-     * Retrieves a pending request for the given target player.
+     * Adds a teleport request to the target's inbox, bounded by the inbox
+     * size of a given settings snapshot.
+     * 
+     * @param request  The teleport request to add
+     * @param settings Settings snapshot the caller is working with
+     */
+    public void addRequest(TeleportRequest request, TpaSettings settings) {
+        TeleportRequest evicted = putInbox(request, settings.maxPendingPerTarget);
+
+        putIndexed(outgoing, request.getSender(), request.getTarget(), request);
+        if (evicted != null) {
+            removeIndexed(outgoing, evicted.getSender(), evicted.getTarget(), evicted);
+            onEvicted(evicted);
+        }
+        dropIfRemoved(request);
+
+        newRequests.offer(request);
+        AuditLog.getInstance().request(AuditFormat.Event.REQUEST, request);
+    }
+
+    /**
+     * Adds requests from one sender to many targets in a single pass.
+     * Each target's inbox behaves as with addRequest, but the sender's
+     * outgoing index is updated once and the expiry hand-off is done in bulk.
+     * 
+     * @param senderUuid UUID of the player who sent every request
+     * @param requests   The requests, all sent by senderUuid to distinct targets
+     */
+    public void addRequests(UUID senderUuid, List<TeleportRequest> requests) {
+        addRequests(senderUuid, requests, TpaSettings.get());
+    }
+
+    /**
+     * Adds requests from one sender to many targets, bounded by the inbox
+     * size of a given settings snapshot.
+     * 
+     * @param senderUuid UUID of the player who sent every request
+     * @param requests   The requests, all sent by senderUuid to distinct targets
+     * @param settings   Settings snapshot the caller is working with
+     */
+    public void addRequests(UUID senderUuid, List<TeleportRequest> requests, TpaSettings settings) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        int maxPending = settings.maxPendingPerTarget;
+        List<TeleportRequest> evicted = new ArrayList<>();
+
+        for (TeleportRequest request : requests) {
+            TeleportRequest dropped = putInbox(request, maxPending);
+            if (dropped != null) {
+                evicted.add(dropped);
+            }
+        }
+
+        outgoing.compute(senderUuid, (sender, sent) -> {
+            Map<UUID, TeleportRequest> result = sent != null ? sent : new ConcurrentHashMap<>();
+            for (TeleportRequest request : requests) {
+                result.put(request.getTarget(), request);
+            }
+            return result;
+        });
+        for (TeleportRequest dropped : evicted) {
+            removeIndexed(outgoing, dropped.getSender(), dropped.getTarget(), dropped);
+            onEvicted(dropped);
+        }
+        for (TeleportRequest request : requests) {
+            dropIfRemoved(request);
+        }
+
+        newRequests.addAll(requests);
+
+        AuditLog audit = AuditLog.getInstance();
+        for (TeleportRequest request : requests) {
+            audit.request(AuditFormat.Event.REQUEST, request);
+        }
+    }
+
+    /**
+     * Stores a request in its target's inbox, dropping the oldest request
+     * when the inbox is full.
+     * 
+     * @return The dropped request, or null
+     */
+    private TeleportRequest putInbox(TeleportRequest request, int maxPending) {
+        TeleportRequest[] evicted = new TeleportRequest[1];
+
+        inboxes.compute(request.getTarget(), (target, inbox) -> {
+            Map<UUID, TeleportRequest> requests = inbox != null ? inbox : new ConcurrentHashMap<>();
+            requests.put(request.getSender(), request);
+
+            if (requests.size() > maxPending) {
+                evicted[0] = findOldest(requests.values(), request);
+                requests.remove(evicted[0].getSender());
+            }
+            return requests;
+        });
+        return evicted[0];
+    }
+
+    /**
+     * Closes a request pushed out of a full inbox the way an expiry would, so
+     * its sender is not left waiting for an answer that cannot come.
+     * A sender on another node is told through the network.
+     */
+    private void onEvicted(TeleportRequest request) {
+        TpaStats.getInstance().requestsExpired.increment();
+        AuditLog.getInstance().request(AuditFormat.Event.EXPIRE, request);
+        TpaNetwork.getInstance().onExpired(request);
+
+        ServerPlayer sender = PlayerSessions.getInstance().get(request.getSender());
+        if (sender != null) {
+            MessageUtils.send(sender, MessageTemplates.get(sender).requestExpired);
+        }
+    }
+
+    /**
+     * Undoes the outgoing entry of a request that left the inbox before the
+     * entry was written, e.g. accepted or evicted by another thread right
+     * after putInbox. Any removal after this check also clears the entry.
+     */
+    private void dropIfRemoved(TeleportRequest request) {
+        if (getRequest(request.getTarget(), request.getSender()) != request) {
+            removeIndexed(outgoing, request.getSender(), request.getTarget(), request);
+        }
+    }
+
+    /**
+     * Retrieves the newest pending request for the given target player.
      * 
      * @param targetUUID The UUID of the target player
      * @return The pending request, or null if none exists
      */
     public TeleportRequest getRequest(UUID targetUUID) {
-        return pendingRequests.get(targetUUID);
+        Map<UUID, TeleportRequest> inbox = inboxes.get(targetUUID);
+        if (inbox == null) {
+            return null;
+        }
+
+        TeleportRequest newest = null;
+        for (TeleportRequest request : inbox.values()) {
+            if (newest == null || request.getCreatedTime() > newest.getCreatedTime()) {
+                newest = request;
+            }
+        }
+        return newest;
     }
 
     /**
-     * Removes a request from the pending list.
+     * Retrieves the pending request a sender made to a target.
      * 
      * @param targetUUID The UUID of the target player
+     * @param senderUUID The UUID of the sender
+     * @return The pending request, or null if none exists
+     */
+    public TeleportRequest getRequest(UUID targetUUID, UUID senderUUID) {
+        Map<UUID, TeleportRequest> inbox = inboxes.get(targetUUID);
+        return inbox != null ? inbox.get(senderUUID) : null;
+    }
+
+    /**
+     * Retrieves all pending requests made by a sender.
+     * 
+     * @param senderUUID The UUID of the sender
+     * @return The sender's outgoing requests (possibly empty)
+     */
+    public Collection<TeleportRequest> getOutgoingRequests(UUID senderUUID) {
+        Map<UUID, TeleportRequest> requests = outgoing.get(senderUUID);
+        return requests != null ? List.copyOf(requests.values()) : List.of();
+    }
+
+    /**
+     * Retrieves all pending requests made to a target.
+     * 
+     * @param targetUUID The UUID of the target player
+     * @return The target's incoming requests (possibly empty)
+     */
+    public Collection<TeleportRequest> getIncomingRequests(UUID targetUUID) {
+        Map<UUID, TeleportRequest> requests = inboxes.get(targetUUID);
+        return requests != null ? List.copyOf(requests.values()) : List.of();
+    }
+
+    /**
+     * Gets the number of pending requests.
+     */
+    public int getRequestCount() {
+        int count = 0;
+        for (Map<UUID, TeleportRequest> inbox : inboxes.values()) {
+            count += inbox.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of stored cooldowns (including ones not yet cleaned up).
+     */
+    public int getCooldownCount() {
+        return cooldowns.size();
+    }
+
+    /**
+     * Gets the number of slots allocated for cooldowns.
+     */
+    public int getCooldownCapacity() {
+        return cooldowns.capacity();
+    }
+
+    /**
+     * Gets the number of players ignoring teleport requests.
+     */
+    public int getIgnoringCount() {
+        return ignoringPlayers.size();
+    }
+
+    /**
+     * Removes a request from the pending list.
+     * 
+     * @param request The request to remove
+     * @return true if the request was still pending
+     */
+    public boolean removeRequest(TeleportRequest request) {
+        if (!removeIndexed(inboxes, request.getTarget(), request.getSender(), request)) {
+            return false;
+        }
+        removeIndexed(outgoing, request.getSender(), request.getTarget(), request);
+        return true;
+    }
+
+    /**
+     * Removes every request sent or received by a player.
+     * 
+     * @param playerUuid UUID of the player
+     */
+    public void removeRequestsOf(UUID playerUuid) {
+        Map<UUID, TeleportRequest> received = inboxes.remove(playerUuid);
+        if (received != null) {
+            for (TeleportRequest request : received.values()) {
+                removeIndexed(outgoing, request.getSender(), request.getTarget(), request);
+            }
+        }
+
+        Map<UUID, TeleportRequest> sent = outgoing.remove(playerUuid);
+        if (sent != null) {
+            for (TeleportRequest request : sent.values()) {
+                removeIndexed(inboxes, request.getTarget(), request.getSender(), request);
+            }
+        }
+    }
+
+    /**
+     * Restores the ignore flag of a player that logs in.
      */
-    public void removeRequest(UUID targetUUID) {
-        pendingRequests.remove(targetUUID);
+    @SubscribeEvent
+    public void onLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (persistedData(event.getEntity()).getBoolean(IGNORING_TAG)) {
+            ignoringPlayers.add(event.getEntity().getUUID());
+        }
+    }
+
+    /**
+     * Drops the state of a player that logs out.
+     * Requests are removed and the ignore flag stays in the player's saved
+     * data. A running cooldown is kept so relogging does not reset it.
+     */
+    @SubscribeEvent
+    public void onLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        UUID playerUuid = event.getEntity().getUUID();
+
+        removeRequestsOf(playerUuid);
+        ignoringPlayers.remove(playerUuid);
+        removeLimits(playerUuid);
+
+        // Drops the entry right away if it already ran out
+        cooldowns.getRemaining(playerUuid, TpaClock.now());
+    }
+
+    private static TeleportRequest findOldest(Collection<TeleportRequest> requests, TeleportRequest exclude) {
+        TeleportRequest oldest = null;
+        for (TeleportRequest request : requests) {
+            if (request != exclude && (oldest == null || request.getCreatedTime() < oldest.getCreatedTime())) {
+                oldest = request;
+            }
+        }
+        return oldest;
+    }
+
+    private static void putIndexed(Map<UUID, Map<UUID, TeleportRequest>> index, UUID key, UUID innerKey,
+            TeleportRequest request) {
+        index.compute(key, (k, requests) -> {
+            Map<UUID, TeleportRequest> result = requests != null ? requests : new ConcurrentHashMap<>();
+            result.put(innerKey, request);
+            return result;
+        });
+    }
+
+    private static boolean removeIndexed(Map<UUID, Map<UUID, TeleportRequest>> index, UUID key, UUID innerKey,
+            TeleportRequest request) {
+        boolean[] removed = new boolean[1];
+        index.computeIfPresent(key, (k, requests) -> {
+            removed[0] = requests.remove(innerKey, request);
+            // Drop empty maps so memory follows the number of pending requests
+            return requests.isEmpty() ? null : requests;
+        });
+        return removed[0];
     }
 
     /**
      * Checks for and removes expired requests.
      * Notifies both players when a request expires.
+     * Only requests whose expiration time has passed are inspected, so this is
+     * cheap enough to run every tick regardless of how many requests are pending.
+     * Must be called from the server thread.
      * 
      * @param server The Minecraft server instance for player lookup
+     * @return Number of queued requests that were due and looked at
      */
-    public void cleanExpired(MinecraftServer server) {
-        List<UUID> toRemove = new ArrayList<>();
+    public int cleanExpired(MinecraftServer server) {
+        TeleportRequest request;
+        int due = 0;
+
+        while ((request = newRequests.poll()) != null) {
+            expiryQueue.offer(request);
+        }
 
-        for (Map.Entry<UUID, TeleportRequest> entry : pendingRequests.entrySet()) {
-            TeleportRequest request = entry.getValue();
+        long now = TpaClock.now();
+        PlayerSessions sessions = PlayerSessions.getInstance();
 
-            if (request.isExpired()) {
-                toRemove.add(entry.getKey());
+        while ((request = expiryQueue.peek()) != null && now > request.getExpirationTime()) {
+            expiryQueue.poll();
+            due++;
 
-                // Notify both players
-                ServerPlayer sender = server.getPlayerList().getPlayer(request.getSender());
-                ServerPlayer target = server.getPlayerList().getPlayer(request.getTarget());
+            // Skip requests that were accepted, denied or replaced after being queued
+            if (!removeRequest(request)) {
+                continue;
+            }
+
+            TpaStats.getInstance().requestsExpired.increment();
+            AuditLog.getInstance().request(AuditFormat.Event.EXPIRE, request);
+            TpaNetwork.getInstance().onExpired(request);
 
-                if (sender != null) {
-                    MessageUtils.send(sender, TpaConfig.MESSAGES.requestExpired.get());
-                }
+            // Notify both players
+            ServerPlayer sender = sessions.get(request.getSender());
+            ServerPlayer target = sessions.get(request.getTarget());
 
-                if (target != null) {
-                    MessageUtils.send(target, TpaConfig.MESSAGES.requestExpired.get());
-                }
+            if (sender != null) {
+                MessageUtils.send(sender, MessageTemplates.get(sender).requestExpired);
             }
-        }
 
-        // Remove expired requests
-        for (UUID uuid : toRemove) {
-            pendingRequests.remove(uuid);
+            if (target != null) {
+                MessageUtils.send(target, MessageTemplates.get(target).requestExpired);
+            }
         }
+
+        return due;
     }
 
     /**
@@ -108,7 +550,17 @@ public class TpaManager {
      * @param playerUuid UUID of the player
      */
     public void setCooldown(UUID playerUuid) {
-        cooldowns.put(playerUuid, System.currentTimeMillis());
+        setCooldown(playerUuid, TpaSettings.get());
+    }
+
+    /**
+     * Sets a cooldown for a player, as long as a given settings snapshot says.
+     * 
+     * @param playerUuid UUID of the player
+     * @param settings   Settings snapshot the caller is working with
+     */
+    public void setCooldown(UUID playerUuid, TpaSettings settings) {
+        cooldowns.start(playerUuid, TpaClock.now(), settings.cooldownMs);
     }
 
     /**
@@ -118,7 +570,7 @@ public class TpaManager {
      * @return true if player is on cooldown
      */
     public boolean isOnCooldown(UUID playerUuid) {
-        return getRemainingCooldown(playerUuid) > 0;
+        return cooldowns.isActive(playerUuid, TpaClock.now());
     }
 
     /**
@@ -128,37 +580,39 @@ public class TpaManager {
      * @return Remaining cooldown in seconds, or 0 if no cooldown
      */
     public long getRemainingCooldown(UUID playerUuid) {
-        if (!cooldowns.containsKey(playerUuid)) {
-            return 0;
-        }
-
-        long lastUse = cooldowns.get(playerUuid);
-        long cooldownMs = TpaConfig.GENERAL.cooldown.get() * 1000L;
-        long elapsed = System.currentTimeMillis() - lastUse;
-        long remaining = cooldownMs - elapsed;
-
-        if (remaining <= 0) {
-            cooldowns.remove(playerUuid);
-            return 0;
-        }
-
+        long remaining = cooldowns.getRemaining(playerUuid, TpaClock.now());
         return (remaining + 999) / 1000; // Round up to nearest second
     }
 
     /**
      * Toggles the ignore status for a player.
+     * The flag is also written to the player's persisted data so it survives
+     * relogs and deaths.
      * 
-     * @param playerUuid UUID of the player
+     * @param player The player
      * @return true if now ignoring, false if now accepting
      */
-    public boolean toggleIgnore(UUID playerUuid) {
-        if (ignoringPlayers.contains(playerUuid)) {
-            ignoringPlayers.remove(playerUuid);
-            return false; // Now accepting
+    public boolean toggleIgnore(ServerPlayer player) {
+        boolean ignoring = !ignoringPlayers.remove(player.getUUID());
+        CompoundTag persisted = persistedData(player);
+
+        if (ignoring) {
+            ignoringPlayers.add(player.getUUID());
+            persisted.putBoolean(IGNORING_TAG, true);
         } else {
-            ignoringPlayers.add(playerUuid);
-            return true; // Now ignoring
+            persisted.remove(IGNORING_TAG);
         }
+        player.getPersistentData().put(Player.PERSISTED_NBT_TAG, persisted);
+
+        return ignoring;
+    }
+
+    /**
+     * Gets the part of a player's data that Forge copies to the new entity
+     * on respawn; the rest of getPersistentData() is lost when they die.
+     */
+    private static CompoundTag persistedData(Player player) {
+        return player.getPersistentData().getCompound(Player.PERSISTED_NBT_TAG);
     }
 
     /**
@@ -0,0 +1,81 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.util.LocalizedMessages;
+
+/**
+ * Immutable snapshot of the whole configuration.
+ * Built from TpaConfig when the config file is loaded or reloaded and
+ * published through a single volatile reference, so hot paths read plain
+ * fields instead of going through ForgeConfigSpec, and code that reads the
+ * snapshot once sees one consistent set of values even during a reload.
+ * Durations are converted to the units they are used in.
+ */
+public final class TpaSettings {
+    private static volatile TpaSettings current;
+
+    public final long requestExpirationMs;
+    public final int teleportWarmupSeconds;
+    public final long cooldownMs;
+    public final int maxPendingPerTarget;
+    public final int senderRequestsPerMinute;
+    public final int senderRequestBurst;
+    public final int targetRequestsPerMinute;
+    public final int targetRequestBurst;
+    public final boolean preloadChunks;
+    public final boolean waitForChunks;
+    public final boolean safeLanding;
+    public final int maxTeleportsPerTick;
+    public final long teleportTickBudgetNanos;
+    public final int backHistorySize;
+    public final boolean auditLog;
+    public final long auditMaxFileBytes;
+    public final TpaConfig.ClockSource clockSource;
+    // Messages compiled from the same reload as the values above
+    public final LocalizedMessages messages;
+
+    private TpaSettings(TpaConfig.General general, TpaConfig.Messages messages) {
+        this.requestExpirationMs = general.requestExpiration.get() * 1000L;
+        this.teleportWarmupSeconds = general.teleportWarmup.get();
+        this.cooldownMs = general.cooldown.get() * 1000L;
+        this.maxPendingPerTarget = general.maxPendingPerTarget.get();
+        this.senderRequestsPerMinute = general.senderRequestsPerMinute.get();
+        this.senderRequestBurst = general.senderRequestBurst.get();
+        this.targetRequestsPerMinute = general.targetRequestsPerMinute.get();
+        this.targetRequestBurst = general.targetRequestBurst.get();
+        this.preloadChunks = general.preloadChunks.get();
+        this.waitForChunks = general.waitForChunks.get();
+        this.safeLanding = general.safeLanding.get();
+        this.maxTeleportsPerTick = general.maxTeleportsPerTick.get();
+        this.teleportTickBudgetNanos = general.teleportTickBudgetMicros.get() * 1000L;
+        this.backHistorySize = general.backHistorySize.get();
+        this.auditLog = general.auditLog.get();
+        this.auditMaxFileBytes = general.auditMaxFileMb.get() * 1024L * 1024L;
+        this.clockSource = general.clockSource.get();
+        this.messages = new LocalizedMessages(messages.language.get(), messages,
+                general.requestExpiration.get());
+    }
+
+    /**
+     * Gets the current snapshot.
+     * Builds it on first use if the config events have not fired yet.
+     */
+    public static TpaSettings get() {
+        TpaSettings settings = current;
+        if (settings == null) {
+            settings = reload();
+        }
+        return settings;
+    }
+
+    /**
+     * Reads every value from TpaConfig and publishes a new snapshot.
+     * Called when the config file is loaded or reloaded.
+     *
+     * @return The newly published snapshot
+     */
+    public static TpaSettings reload() {
+        TpaSettings settings = new TpaSettings(TpaConfig.GENERAL, TpaConfig.MESSAGES);
+        current = settings;
+        return settings;
+    }
+}
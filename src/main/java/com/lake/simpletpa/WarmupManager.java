@@ -1,40 +1,89 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.MessageTemplates;
 import com.lake.simpletpa.util.MessageUtils;
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.core.SectionPos;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.living.LivingHurtEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Singleton manager for handling teleport warmup tasks.
  * Tracks players waiting to teleport and validates movement.
+ * Cancellation is event-driven: damage, dimension changes, logouts and
+ * movement cancel a warmup on the tick they happen.
+ * The destination chunk is kept loaded by a chunk ticket for the whole
+ * warmup, so it loads asynchronously during the countdown; the safe-landing
+ * search starts once it is loaded.
+ * Warmups can be started and cancelled from any thread; scheduling and chunk
+ * tickets are handled on the server thread.
  */
 public class WarmupManager {
-    private static WarmupManager instance;
+    private static final WarmupManager INSTANCE = new WarmupManager();
     private final Map<UUID, WarmupTask> warmingUpPlayers;
+    // Tasks started since the last tick, moved into the completion queue by the server thread
+    private final Queue<WarmupTask> newTasks;
+    // Warmups ordered by completion time, so each tick only touches tasks that are due
+    private final PriorityQueue<WarmupTask> completionQueue;
+    // Due tasks whose destination chunk is still loading or whose landing search is still running
+    private final List<WarmupTask> awaitingChunks;
 
-    // Movement threshold in blocks
+    // Movement threshold in blocks (squared to avoid a sqrt per check)
     private static final double MOVEMENT_THRESHOLD = 0.1;
+    private static final double MOVEMENT_THRESHOLD_SQR = MOVEMENT_THRESHOLD * MOVEMENT_THRESHOLD;
+
+    // Keeps the destination loaded during the warmup; the lifespan (in ticks) is a safety net
+    // in case a ticket is never released, it outlasts the longest configurable warmup
+    private static final TicketType<ChunkPos> PRELOAD_TICKET = TicketType.create("simpletpa_preload",
+            Comparator.comparingLong(ChunkPos::toLong), 20 * 90);
+    private static final int PRELOAD_RADIUS = 2;
+
+    // Longest a due teleport is held while its destination chunk loads, in TpaClock milliseconds:
+    // 5 s of wall time, or 100 game ticks however long they take with clockSource=TICKS
+    private static final long MAX_CHUNK_WAIT = 100 * TpaClock.MILLIS_PER_TICK;
 
     private WarmupManager() {
-        this.warmingUpPlayers = new HashMap<>();
+        this.warmingUpPlayers = new ConcurrentHashMap<>();
+        this.newTasks = new ConcurrentLinkedQueue<>();
+        this.completionQueue = new PriorityQueue<>(Comparator.comparingLong(WarmupTask::getCompletionTime));
+        this.awaitingChunks = new ArrayList<>();
     }
 
     /**
      * Gets the singleton instance of WarmupManager.
      */
     public static WarmupManager getInstance() {
-        if (instance == null) {
-            instance = new WarmupManager();
-        }
-        return instance;
+        return INSTANCE;
+    }
+
+    /**
+     * Drops all warmup tasks without teleporting anyone.
+     * Called when the server stops; chunk tickets go away with their levels.
+     */
+    public void clear() {
+        warmingUpPlayers.clear();
+        newTasks.clear();
+        completionQueue.clear();
+        awaitingChunks.clear();
     }
 
     /**
@@ -43,16 +92,92 @@ public class WarmupManager {
      * @param task The warmup task to start
      */
     public void startWarmup(WarmupTask task) {
-        warmingUpPlayers.put(task.getPlayerUuid(), task);
+        WarmupTask previous = warmingUpPlayers.put(task.getPlayerUuid(), task);
+        if (previous != null) {
+            releaseChunks(previous);
+        }
+
+        // Start loading the destination right away, the landing search starts once it is loaded.
+        // Whether a ticket was placed is kept on the task, so a config reload cannot change
+        // what gets released
+        if (TpaSettings.get().preloadChunks && task.getTargetLevel() != null) {
+            task.setTicketPlaced();
+            preloadChunks(task.getTargetLevel(), task.getTargetChunk());
+        }
+        newTasks.offer(task);
+    }
+
+    /**
+     * Starts a teleport once it has been allowed: right away when there is no
+     * warmup and the destination is ready, otherwise through a warmup (with no
+     * countdown it just waits for the destination chunk).
+     * Shared by accepted requests, /back and players arriving from another node.
+     *
+     * @param player     The player to teleport
+     * @param notifyUuid Player told when the teleport happens, or null
+     * @param type       Type of the accepted request, or null for /back
+     * @param level      Destination dimension
+     * @param position   Destination coordinates
+     * @param yaw        Destination yaw rotation
+     * @param pitch      Destination pitch rotation
+     */
+    public void startTeleport(ServerPlayer player, UUID notifyUuid, RequestType type, ServerLevel level,
+            Vec3 position, float yaw, float pitch) {
+        TpaSettings settings = TpaSettings.get();
+        int warmupSeconds = settings.teleportWarmupSeconds;
+
+        // The landing search needs the chunk too, on an unloaded one it would keep the raw destination
+        boolean destinationReady = (!settings.waitForChunks && !settings.safeLanding)
+                || isDestinationLoaded(level, position);
+
+        if (warmupSeconds == 0 && destinationReady) {
+            // Instant teleport
+            performTeleport(player, level, position, yaw, pitch);
+            return;
+        }
+
+        startWarmup(new WarmupTask(player.getUUID(), notifyUuid, type, player.position(), level, position,
+                yaw, pitch, warmupSeconds));
+
+        if (warmupSeconds > 0) {
+            MessageUtils.send(player, MessageTemplates.get(player).warmupStart, warmupSeconds);
+        }
+    }
+
+    /**
+     * Performs an instant teleport.
+     * Lands on a safe spot near the destination, searched off the server
+     * thread, and goes through the TeleportQueue once the search is done so
+     * it respects the per-tick teleport budget.
+     */
+    private static void performTeleport(ServerPlayer player, ServerLevel level, Vec3 target, float yaw,
+            float pitch) {
+        SafeLanding.getInstance().resolve(level, target)
+                .exceptionally(e -> target)
+                .thenAccept(destination -> TeleportQueue.getInstance().enqueue(new PendingTeleport(player, null,
+                        level, destination.x, destination.y, destination.z, yaw, pitch, null, 0)));
     }
 
     /**
      * Cancels a warmup task for a player.
+     * The task stays in the completion queue and is skipped when it becomes due.
      * 
      * @param playerUuid UUID of the player
      */
     public void cancelWarmup(UUID playerUuid) {
-        warmingUpPlayers.remove(playerUuid);
+        removeTask(playerUuid);
+    }
+
+    /**
+     * Checks whether the chunk at a destination is loaded.
+     * 
+     * @param level    Destination dimension
+     * @param position Destination coordinates
+     * @return true if the chunk is loaded
+     */
+    public static boolean isDestinationLoaded(ServerLevel level, Vec3 position) {
+        // Polled every tick while a due teleport waits, so no BlockPos/ChunkPos here
+        return level.hasChunk(SectionPos.blockToSectionCoord(position.x), SectionPos.blockToSectionCoord(position.z));
     }
 
     /**
@@ -66,80 +191,251 @@ public class WarmupManager {
     }
 
     /**
-     * Processes all active warmup tasks.
-     * Checks for movement and completion, executes or cancels as needed.
+     * Gets the number of players currently warming up.
+     */
+    public int getWarmupCount() {
+        return warmingUpPlayers.size();
+    }
+
+    /**
+     * Processes warmup tasks whose completion time has passed.
+     * Meant to run every tick; tasks that are not yet due are never touched,
+     * cancelled tasks have already been removed by the event handlers.
+     * Must be called from the server thread.
      * 
      * @param server The Minecraft server instance
      */
     public void checkWarmups(MinecraftServer server) {
-        if (warmingUpPlayers.isEmpty()) {
-            return;
+        WarmupTask task;
+
+        while ((task = newTasks.poll()) != null) {
+            // Destinations that are already loaded get their landing searched during the countdown
+            startLanding(task);
+            completionQueue.offer(task);
         }
 
-        List<UUID> toRemove = new ArrayList<>();
-        int warmupSeconds = TpaConfig.GENERAL.teleportWarmup.get();
+        long now = TpaClock.now();
+        boolean waitForChunks = TpaSettings.get().waitForChunks;
 
-        for (Map.Entry<UUID, WarmupTask> entry : warmingUpPlayers.entrySet()) {
-            UUID playerUuid = entry.getKey();
-            WarmupTask task = entry.getValue();
+        while ((task = completionQueue.peek()) != null && now >= task.getCompletionTime()) {
+            completionQueue.poll();
 
-            ServerPlayer player = server.getPlayerList().getPlayer(playerUuid);
+            // Skip tasks that were cancelled or replaced after being queued
+            if (warmingUpPlayers.get(task.getPlayerUuid()) != task) {
+                continue;
+            }
 
-            // Player disconnected
-            if (player == null) {
-                toRemove.add(playerUuid);
+            startLanding(task);
+            if (!isDestinationReady(task, waitForChunks)) {
+                awaitingChunks.add(task);
                 continue;
             }
 
-            // Check for movement
-            Vec3 currentPos = player.position();
-            double distance = currentPos.distanceTo(task.getStartPosition());
+            completeWarmup(task);
+        }
+
+        if (!awaitingChunks.isEmpty()) {
+            checkAwaitingChunks(now, waitForChunks);
+        }
+    }
 
-            if (distance > MOVEMENT_THRESHOLD) {
-                // Player moved, cancel warmup
-                MessageUtils.send(player, TpaConfig.MESSAGES.warmupCancelled.get());
-                toRemove.add(playerUuid);
-                continue;
+    /**
+     * Starts the safe-landing search of a task once its destination chunk is
+     * loaded; on an unloaded chunk the search could only keep the raw
+     * destination. A task without a preload ticket has no chunk on the way,
+     * so its search starts as is.
+     * Must be called from the server thread.
+     */
+    private static void startLanding(WarmupTask task) {
+        if (task.isLandingStarted() || task.getTargetLevel() == null) {
+            return;
+        }
+
+        if (!task.hasTicket() || isDestinationLoaded(task.getTargetLevel(), task.getTargetPosition())) {
+            task.setLanding(SafeLanding.getInstance().resolve(task.getTargetLevel(), task.getTargetPosition()));
+        }
+    }
+
+    /**
+     * Checks whether a due task can teleport: its chunk is loaded (when
+     * configured to wait for it) and its landing search has finished.
+     */
+    private static boolean isDestinationReady(WarmupTask task, boolean waitForChunks) {
+        return (task.getTargetLevel() == null || task.isLandingResolved())
+                && (!waitForChunks || isDestinationLoaded(task.getTargetLevel(), task.getTargetPosition()));
+    }
+
+    /**
+     * Completes due tasks whose destination became ready.
+     * Gives up waiting after MAX_CHUNK_WAIT and teleports anyway.
+     */
+    private void checkAwaitingChunks(long now, boolean waitForChunks) {
+        for (int i = awaitingChunks.size() - 1; i >= 0; i--) {
+            WarmupTask task = awaitingChunks.get(i);
+            boolean cancelled = warmingUpPlayers.get(task.getPlayerUuid()) != task;
+            if (!cancelled) {
+                startLanding(task);
             }
 
-            // Check if warmup is complete
-            if (task.isComplete(warmupSeconds)) {
-                // Execute teleport
-                executeTeleport(player, task, server);
-                toRemove.add(playerUuid);
+            if (cancelled || isDestinationReady(task, waitForChunks)
+                    || now - task.getCompletionTime() >= MAX_CHUNK_WAIT) {
+                awaitingChunks.remove(i);
+
+                if (!cancelled) {
+                    completeWarmup(task);
+                }
             }
         }
+    }
+
+    /**
+     * Removes a finished task and hands its teleport to the TeleportQueue.
+     * The queue releases the chunk ticket once the teleport has run.
+     */
+    private void completeWarmup(WarmupTask task) {
+        warmingUpPlayers.remove(task.getPlayerUuid());
+
+        ServerPlayer player = PlayerSessions.getInstance().get(task.getPlayerUuid());
+
+        // Player disconnected
+        if (player == null) {
+            releaseChunks(task);
+            return;
+        }
 
-        // Remove completed/cancelled tasks
-        for (UUID uuid : toRemove) {
-            warmingUpPlayers.remove(uuid);
+        // Final movement check before teleporting
+        if (task.hasWarmup() && hasMoved(player, task)) {
+            TpaStats.getInstance().warmupsCancelled.increment();
+            MessageUtils.send(player, MessageTemplates.get(player).warmupCancelled);
+            releaseChunks(task);
+            return;
         }
+
+        Vec3 dest = task.getLandingPosition();
+        TeleportQueue.getInstance().enqueue(new PendingTeleport(player, task.getTargetUuid(),
+                task.getTargetLevel(), dest.x, dest.y, dest.z,
+                task.getTargetYaw(), task.getTargetPitch(), task.hasTicket() ? task.getTargetChunk() : null,
+                task.hasWarmup() ? task.getStartTime() : 0));
     }
 
     /**
-     * Executes the actual teleportation after warmup completes.
-     * 
-     * @param player The player to teleport
-     * @param task   The warmup task containing destination info
-     * @param server The server instance
+     * Cancels the warmup of a player that moved away from the start position.
+     * Players without an active warmup only cost a map lookup.
+     */
+    @SubscribeEvent
+    public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || warmingUpPlayers.isEmpty()
+                || !(event.player instanceof ServerPlayer player)) {
+            return;
+        }
+
+        WarmupTask task = warmingUpPlayers.get(player.getUUID());
+
+        if (task != null && task.hasWarmup() && hasMoved(player, task)) {
+            // Player moved, cancel warmup
+            removeTask(player.getUUID());
+            TpaStats.getInstance().warmupsCancelled.increment();
+            MessageUtils.send(player, MessageTemplates.get(player).warmupCancelled);
+        }
+    }
+
+    /**
+     * Cancels the warmup of a player that takes damage.
+     */
+    @SubscribeEvent
+    public void onLivingHurt(LivingHurtEvent event) {
+        if (warmingUpPlayers.isEmpty() || event.getAmount() <= 0
+                || !(event.getEntity() instanceof ServerPlayer player)) {
+            return;
+        }
+
+        WarmupTask task = warmingUpPlayers.get(player.getUUID());
+
+        if (task != null && task.hasWarmup()) {
+            removeTask(player.getUUID());
+            TpaStats.getInstance().warmupsCancelled.increment();
+            MessageUtils.send(player, MessageTemplates.get(player).warmupCancelledDamage);
+        }
+    }
+
+    /**
+     * Cancels the warmup of a player that changes dimension (portals, other mods).
+     */
+    @SubscribeEvent
+    public void onChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        if (warmingUpPlayers.isEmpty() || !(event.getEntity() instanceof ServerPlayer player)) {
+            return;
+        }
+
+        WarmupTask task = warmingUpPlayers.get(player.getUUID());
+
+        if (task != null && task.hasWarmup()) {
+            removeTask(player.getUUID());
+            TpaStats.getInstance().warmupsCancelled.increment();
+            MessageUtils.send(player, MessageTemplates.get(player).warmupCancelled);
+        }
+    }
+
+    /**
+     * Drops the warmup of a player that logs out.
      */
-    private void executeTeleport(ServerPlayer player, WarmupTask task, MinecraftServer server) {
-        Vec3 dest = task.getTargetPosition();
+    @SubscribeEvent
+    public void onLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (!warmingUpPlayers.isEmpty()) {
+            removeTask(event.getEntity().getUUID());
+        }
+    }
 
-        // Teleport the player
-        player.teleportTo(task.getTargetLevel(),
-                dest.x, dest.y, dest.z,
-                task.getTargetYaw(), task.getTargetPitch());
+    /**
+     * Removes a player's task and releases its chunk ticket.
+     */
+    private void removeTask(UUID playerUuid) {
+        WarmupTask task = warmingUpPlayers.remove(playerUuid);
+        if (task != null) {
+            releaseChunks(task);
+        }
+    }
 
-        // Send success messages
-        MessageUtils.send(player, TpaConfig.MESSAGES.teleporting.get());
+    /**
+     * Releases the chunk ticket placed when the task started, if any.
+     */
+    private void releaseChunks(WarmupTask task) {
+        if (task.hasTicket()) {
+            releaseChunks(task.getTargetLevel(), task.getTargetChunk());
+        }
+    }
 
-        // Notify target player
-        ServerPlayer target = server.getPlayerList().getPlayer(task.getTargetUuid());
-        if (target != null) {
-            String message = String.format(
-                    TpaConfig.MESSAGES.teleporting.get().replace("%s", player.getName().getString()));
-            MessageUtils.send(target, message);
+    /**
+     * Places a preload chunk ticket, on the server thread.
+     */
+    private static void preloadChunks(ServerLevel level, ChunkPos chunk) {
+        MinecraftServer server = level.getServer();
+        if (!server.isSameThread()) {
+            server.execute(() -> preloadChunks(level, chunk));
+            return;
         }
+        level.getChunkSource().addRegionTicket(PRELOAD_TICKET, chunk, PRELOAD_RADIUS, chunk);
+    }
+
+    /**
+     * Releases a preload chunk ticket, on the server thread.
+     * 
+     * @param level Dimension holding the ticket
+     * @param chunk Chunk the ticket was placed on
+     */
+    static void releaseChunks(ServerLevel level, ChunkPos chunk) {
+        MinecraftServer server = level.getServer();
+        if (!server.isSameThread()) {
+            server.execute(() -> releaseChunks(level, chunk));
+            return;
+        }
+        level.getChunkSource().removeRegionTicket(PRELOAD_TICKET, chunk, PRELOAD_RADIUS, chunk);
+    }
+
+    /**
+     * Checks whether a player moved away from the warmup start position.
+     */
+    private boolean hasMoved(ServerPlayer player, WarmupTask task) {
+        return player.distanceToSqr(task.getStartPosition()) > MOVEMENT_THRESHOLD_SQR;
     }
 }
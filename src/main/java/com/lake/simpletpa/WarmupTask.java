@@ -1,9 +1,13 @@
 package com.lake.simpletpa;
 
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.phys.Vec3;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents a warmup task for a player waiting to teleport.
@@ -14,33 +18,41 @@ public class WarmupTask {
     private final UUID targetUuid;
     private final RequestType type;
     private final long startTime;
+    private final long completionTime;
     private final Vec3 startPosition;
     private final ServerLevel targetLevel;
     private final Vec3 targetPosition;
+    private final ChunkPos targetChunk;
     private final float targetYaw;
     private final float targetPitch;
+    private volatile CompletableFuture<Vec3> landing;
+    private volatile boolean ticketPlaced;
 
     /**
      * Creates a new warmup task.
      * 
      * @param playerUuid     UUID of the player being teleported
-     * @param targetUuid     UUID of the target player (for notifications)
-     * @param type           Type of teleport request
+     * @param targetUuid     UUID of the target player (for notifications), or null
+     * @param type           Type of teleport request, or null for /back
      * @param startPosition  Starting position of the player
      * @param targetLevel    Destination dimension
      * @param targetPosition Destination coordinates
      * @param targetYaw      Destination yaw rotation
      * @param targetPitch    Destination pitch rotation
+     * @param warmupSeconds  Warmup duration in seconds
      */
     public WarmupTask(UUID playerUuid, UUID targetUuid, RequestType type, Vec3 startPosition,
-            ServerLevel targetLevel, Vec3 targetPosition, float targetYaw, float targetPitch) {
+            ServerLevel targetLevel, Vec3 targetPosition, float targetYaw, float targetPitch,
+            int warmupSeconds) {
         this.playerUuid = playerUuid;
         this.targetUuid = targetUuid;
         this.type = type;
-        this.startTime = System.currentTimeMillis();
+        this.startTime = TpaClock.now();
+        this.completionTime = startTime + (warmupSeconds * 1000L);
         this.startPosition = startPosition;
         this.targetLevel = targetLevel;
         this.targetPosition = targetPosition;
+        this.targetChunk = new ChunkPos(BlockPos.containing(targetPosition));
         this.targetYaw = targetYaw;
         this.targetPitch = targetPitch;
     }
@@ -61,6 +73,10 @@ public class WarmupTask {
         return startTime;
     }
 
+    public long getCompletionTime() {
+        return completionTime;
+    }
+
     public Vec3 getStartPosition() {
         return startPosition;
     }
@@ -73,6 +89,10 @@ public class WarmupTask {
         return targetPosition;
     }
 
+    public ChunkPos getTargetChunk() {
+        return targetChunk;
+    }
+
     public float getTargetYaw() {
         return targetYaw;
     }
@@ -81,14 +101,72 @@ public class WarmupTask {
         return targetPitch;
     }
 
+    /**
+     * Records that a preload chunk ticket was placed for this task, so it is
+     * released even if preloading is turned off before the task ends.
+     */
+    public void setTicketPlaced() {
+        this.ticketPlaced = true;
+    }
+
+    /**
+     * Checks whether a preload chunk ticket was placed for this task.
+     */
+    public boolean hasTicket() {
+        return ticketPlaced;
+    }
+
+    /**
+     * Sets the pending safe-landing search for the destination.
+     */
+    public void setLanding(CompletableFuture<Vec3> landing) {
+        this.landing = landing;
+    }
+
+    /**
+     * Checks whether the safe-landing search has been started.
+     */
+    public boolean isLandingStarted() {
+        return landing != null;
+    }
+
+    /**
+     * Checks whether the safe-landing search has finished.
+     */
+    public boolean isLandingResolved() {
+        CompletableFuture<Vec3> future = landing;
+        return future != null && future.isDone();
+    }
+
+    /**
+     * Gets the position to teleport to: the safe spot found near the
+     * destination, or the destination itself while none is known.
+     */
+    public Vec3 getLandingPosition() {
+        CompletableFuture<Vec3> future = landing;
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return targetPosition;
+        }
+        return future.join();
+    }
+
+    /**
+     * Checks if this task has a countdown the player must wait through.
+     * Instant teleports waiting for their destination chunk have none and
+     * are not cancelled by movement or damage.
+     * 
+     * @return true if the warmup duration is greater than zero
+     */
+    public boolean hasWarmup() {
+        return completionTime > startTime;
+    }
+
     /**
      * Checks if the warmup period has elapsed.
      * 
-     * @param warmupSeconds Configured warmup duration in seconds
      * @return true if warmup is complete
      */
-    public boolean isComplete(int warmupSeconds) {
-        long elapsedMs = System.currentTimeMillis() - startTime;
-        return elapsedMs >= (warmupSeconds * 1000L);
+    public boolean isComplete() {
+        return TpaClock.now() >= completionTime;
     }
 }
@@ -0,0 +1,69 @@
+package com.lake.simpletpa.audit;
+
+/**
+ * Layout of the binary audit log, shared by the writer and the offline reader.
+ * <pre>
+ * file:      header | record*
+ * header:    magic i32 | version u16 | record size u16 | created (epoch ms) i64
+ * record:    time (epoch ms) i64 | event u8 | type u8 (0xFF = none) | dimension u16 | reserved i32
+ *            | payload (48 bytes)
+ * payload:   player 2*i64 | other player 2*i64 (0 = none) | x i32 | y i32 | z i32 | reserved i32
+ * DIMENSION: dimension u16 holds the id, payload holds the dimension name (UTF-8, zero padded)
+ * PLAYER:    payload holds the player's UUID then their name (UTF-8, zero padded)
+ * </pre>
+ * Every record is 64 bytes, so a file can be scanned or searched by offset
+ * without parsing. Request events store the sender as player and the
+ * target as other player; teleports store the destination block.
+ * Big-endian, like ByteBuffer's default.
+ */
+public final class AuditFormat {
+    public static final int MAGIC = 0x54504141; // "TPAA"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 64;
+
+    // Record offsets
+    public static final int TIME = 0;
+    public static final int EVENT = 8;
+    public static final int TYPE = 9;
+    public static final int DIMENSION = 10;
+    public static final int PAYLOAD = 16;
+    public static final int PLAYER = 16;
+    public static final int OTHER = 32;
+    public static final int X = 48;
+    public static final int Y = 52;
+    public static final int Z = 56;
+    // Room for a name in DIMENSION and PLAYER records
+    public static final int DIMENSION_NAME_SIZE = RECORD_SIZE - PAYLOAD;
+    public static final int PLAYER_NAME = 32;
+    public static final int PLAYER_NAME_SIZE = RECORD_SIZE - PLAYER_NAME;
+
+    public static final int NO_TYPE = 0xFF;
+
+    /**
+     * Kinds of audit records. The ordinal is the stored byte, so new kinds
+     * go at the end.
+     */
+    public enum Event {
+        DIMENSION,
+        PLAYER,
+        REQUEST,
+        ACCEPT,
+        DENY,
+        CANCEL,
+        EXPIRE,
+        TELEPORT;
+
+        private static final Event[] VALUES = values();
+
+        /**
+         * Gets the event stored as a byte, or null for an unknown one.
+         */
+        public static Event of(int id) {
+            return id >= 0 && id < VALUES.length ? VALUES[id] : null;
+        }
+    }
+
+    private AuditFormat() {
+    }
+}
@@ -0,0 +1,439 @@
+package com.lake.simpletpa.audit;
+
+import com.lake.simpletpa.PlayerSessions;
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.TeleportRequest;
+import com.lake.simpletpa.TpaSettings;
+import com.lake.simpletpa.stats.TpaStats;
+import com.mojang.logging.LogUtils;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Singleton append-only audit log of teleport requests and teleports.
+ * Callers copy a fixed-size record into a preallocated buffer and return; a
+ * background thread swaps the buffer for a spare one, writes the whole batch
+ * with one FileChannel write and forces it to disk (group commit).
+ * Files rotate once they reach the configured size. If the writer falls
+ * behind and the buffer fills up, records are dropped and counted rather
+ * than blocking the server thread. Reopening or disabling the log never
+ * waits: the previous writer drains its own buffers and closes its file in
+ * the background.
+ * See AuditFormat for the layout and AuditLogReader for the query tool.
+ */
+public class AuditLog {
+    private static final AuditLog INSTANCE = new AuditLog();
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    // Records buffered between two commits
+    private static final int BUFFER_RECORDS = 4096;
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("'audit-'yyyyMMdd-HHmmss-SSS'.bin'");
+
+    // Guards the writers' buffers and replacing the writer
+    private final Object lock = new Object();
+    private volatile Writer writer;
+
+    // Dimension id -> key; ids are indexes into this list and never reused
+    private final List<ResourceKey<Level>> dimensions;
+    private final Map<ResourceKey<Level>, Integer> dimensionIds;
+
+    private AuditLog() {
+        this.dimensions = new CopyOnWriteArrayList<>();
+        this.dimensionIds = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the singleton instance of AuditLog.
+     */
+    public static AuditLog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts writing to a new file in the given directory.
+     * A writer already running finishes in the background.
+     *
+     * @param directory    Directory holding the audit files
+     * @param maxFileBytes Size after which a new file is started
+     */
+    public synchronized void open(Path directory, long maxFileBytes) {
+        Writer started = new Writer(directory, maxFileBytes);
+        replaceWriter(started);
+        started.thread.start();
+    }
+
+    /**
+     * Writes out everything buffered and stops the writer thread, waiting
+     * for it. Called when the server stops.
+     */
+    public synchronized void close() {
+        Writer previous = replaceWriter(null);
+        if (previous == null) {
+            return;
+        }
+
+        try {
+            previous.thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Opens, reopens or closes the log to match the settings.
+     * Called when the server starts and on every config reload while it runs,
+     * a writer already matching the settings is left alone.
+     *
+     * @param directory Directory holding the audit files
+     * @param settings  Settings to apply
+     */
+    public synchronized void apply(Path directory, TpaSettings settings) {
+        if (!settings.auditLog) {
+            replaceWriter(null);
+            return;
+        }
+
+        Writer current = writer;
+        if (current == null || current.maxFileBytes != settings.auditMaxFileBytes
+                || !current.directory.equals(directory)) {
+            open(directory, settings.auditMaxFileBytes);
+        }
+    }
+
+    /**
+     * Swaps in a new writer and tells the previous one to stop without
+     * waiting for it. Records added before the swap went into the previous
+     * writer's buffers, which it writes out to its own file before exiting.
+     *
+     * @param next The new writer, or null to stop logging
+     * @return The previous writer, or null
+     */
+    private Writer replaceWriter(Writer next) {
+        Writer previous;
+        synchronized (lock) {
+            previous = writer;
+            writer = next;
+        }
+
+        if (previous != null) {
+            previous.running = false;
+            LockSupport.unpark(previous.thread);
+        }
+        return previous;
+    }
+
+    /**
+     * Records an event about a request: sent, accepted, denied, cancelled or expired.
+     *
+     * @param event   What happened
+     * @param request The request
+     */
+    public void request(AuditFormat.Event event, TeleportRequest request) {
+        if (writer == null) {
+            return;
+        }
+        append(event, request.getType(), 0, request.getSender(), request.getTarget(), 0, 0, 0);
+    }
+
+    /**
+     * Records a teleport.
+     *
+     * @param player     The player who teleported
+     * @param otherUuid  UUID of the player they were sent to or brought by, or null
+     * @param dimension  Destination dimension
+     * @param x          Destination X coordinate
+     * @param y          Destination Y coordinate
+     * @param z          Destination Z coordinate
+     */
+    public void teleport(ServerPlayer player, UUID otherUuid, ResourceKey<Level> dimension,
+            double x, double y, double z) {
+        if (writer == null) {
+            return;
+        }
+        append(AuditFormat.Event.TELEPORT, null, dimensionId(dimension), player.getUUID(), otherUuid,
+                (int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z));
+    }
+
+    /**
+     * Records the name of a player who logs in, so the reader can show names.
+     */
+    @SubscribeEvent
+    public void onLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (writer != null && event.getEntity() instanceof ServerPlayer player) {
+            synchronized (lock) {
+                Writer current = writer;
+                if (!reserve(current)) {
+                    return;
+                }
+                putPlayer(current.active, System.currentTimeMillis(), player.getUUID(),
+                        player.getGameProfile().getName());
+            }
+        }
+    }
+
+    private void append(AuditFormat.Event event, RequestType type, int dimension, UUID player, UUID other,
+            int x, int y, int z) {
+        long time = System.currentTimeMillis();
+        Writer current;
+        boolean wake;
+
+        synchronized (lock) {
+            current = writer;
+            if (!reserve(current)) {
+                return;
+            }
+
+            ByteBuffer buffer = current.active;
+            int start = buffer.position();
+            buffer.putLong(time)
+                    .put((byte) event.ordinal())
+                    .put((byte) (type != null ? type.ordinal() : AuditFormat.NO_TYPE))
+                    .putShort((short) dimension)
+                    .putInt(0)
+                    .putLong(player.getMostSignificantBits())
+                    .putLong(player.getLeastSignificantBits())
+                    .putLong(other != null ? other.getMostSignificantBits() : 0L)
+                    .putLong(other != null ? other.getLeastSignificantBits() : 0L)
+                    .putInt(x)
+                    .putInt(y)
+                    .putInt(z)
+                    .putInt(0);
+            wake = start + AuditFormat.RECORD_SIZE >= buffer.capacity() / 2;
+        }
+
+        // Commit early when half the buffer is used
+        if (wake) {
+            LockSupport.unpark(current.thread);
+        }
+    }
+
+    /**
+     * Checks the writer has room for one more record, counting a drop if not.
+     * Must hold lock, and the writer must have been read under it.
+     */
+    private boolean reserve(Writer current) {
+        if (current == null || current.active.remaining() < AuditFormat.RECORD_SIZE) {
+            TpaStats.getInstance().auditDropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private int dimensionId(ResourceKey<Level> dimension) {
+        Integer id = dimensionIds.get(dimension);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (dimensions) {
+            return dimensionIds.computeIfAbsent(dimension, key -> {
+                dimensions.add(key);
+                return dimensions.size() - 1;
+            });
+        }
+    }
+
+    private static void putPlayer(ByteBuffer buffer, long time, UUID uuid, String name) {
+        buffer.putLong(time)
+                .put((byte) AuditFormat.Event.PLAYER.ordinal())
+                .put((byte) AuditFormat.NO_TYPE)
+                .putShort((short) 0)
+                .putInt(0)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits());
+        putName(buffer, name, AuditFormat.PLAYER_NAME_SIZE);
+    }
+
+    private static void putDimension(ByteBuffer buffer, long time, int id, String name) {
+        buffer.putLong(time)
+                .put((byte) AuditFormat.Event.DIMENSION.ordinal())
+                .put((byte) AuditFormat.NO_TYPE)
+                .putShort((short) id)
+                .putInt(0);
+        putName(buffer, name, AuditFormat.DIMENSION_NAME_SIZE);
+    }
+
+    private static void putName(ByteBuffer buffer, String name, int size) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, size);
+        buffer.put(bytes, 0, length);
+        for (int i = length; i < size; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Background thread owning the file.
+     */
+    private final class Writer implements Runnable {
+        final Thread thread;
+        final Path directory;
+        final long maxFileBytes;
+        volatile boolean running = true;
+
+        // Buffer callers write into, guarded by lock
+        ByteBuffer active;
+        // Buffer this thread drains, swapped with active on every commit
+        private ByteBuffer standby;
+        private FileChannel channel;
+        // Dimensions and online players already described in the current file
+        private int dimensionsWritten;
+        private final ByteBuffer preamble = ByteBuffer.allocateDirect(64 * AuditFormat.RECORD_SIZE);
+
+        Writer(Path directory, long maxFileBytes) {
+            this.directory = directory;
+            this.maxFileBytes = maxFileBytes;
+            this.active = ByteBuffer.allocateDirect(BUFFER_RECORDS * AuditFormat.RECORD_SIZE);
+            this.standby = ByteBuffer.allocateDirect(BUFFER_RECORDS * AuditFormat.RECORD_SIZE);
+            this.thread = new Thread(this, "SimpleTPA audit writer");
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Files.createDirectories(directory);
+                while (running) {
+                    LockSupport.parkNanos(COMMIT_INTERVAL_NANOS);
+                    commit();
+                }
+                commit();
+            } catch (IOException e) {
+                LOGGER.error("Audit log stopped", e);
+                synchronized (lock) {
+                    // A writer that was already replaced must not stop its successor
+                    if (writer == this) {
+                        writer = null;
+                    }
+                }
+            } finally {
+                closeChannel();
+            }
+        }
+
+        /**
+         * Swaps the buffers and writes out everything callers added since the last commit.
+         */
+        private void commit() throws IOException {
+            ByteBuffer batch;
+            synchronized (lock) {
+                if (active.position() == 0) {
+                    return;
+                }
+                batch = active;
+                active = standby;
+                standby = batch;
+            }
+
+            batch.flip();
+            if (channel == null || channel.size() >= maxFileBytes) {
+                rotate();
+            }
+            writeNewDimensions();
+
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            batch.clear();
+        }
+
+        /**
+         * Starts a new file, describing the online players at its start.
+         */
+        private void rotate() throws IOException {
+            closeChannel();
+
+            // A writer being replaced may rotate in the same millisecond as its successor
+            LocalDateTime created = LocalDateTime.now();
+            while (channel == null) {
+                try {
+                    channel = FileChannel.open(directory.resolve(created.format(FILE_NAME)),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    created = created.plusNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+            dimensionsWritten = 0;
+
+            long now = System.currentTimeMillis();
+            ByteBuffer header = ByteBuffer.allocate(AuditFormat.HEADER_SIZE)
+                    .putInt(AuditFormat.MAGIC)
+                    .putShort(AuditFormat.VERSION)
+                    .putShort((short) AuditFormat.RECORD_SIZE)
+                    .putLong(now)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            for (ServerPlayer player : PlayerSessions.getInstance().getPlayers()) {
+                if (!preamble.hasRemaining()) {
+                    flushPreamble();
+                }
+                putPlayer(preamble, now, player.getUUID(), player.getGameProfile().getName());
+            }
+            flushPreamble();
+        }
+
+        /**
+         * Describes dimensions first seen since they were last written to this file.
+         */
+        private void writeNewDimensions() throws IOException {
+            long now = System.currentTimeMillis();
+            while (dimensionsWritten < dimensions.size()) {
+                if (!preamble.hasRemaining()) {
+                    flushPreamble();
+                }
+                putDimension(preamble, now, dimensionsWritten,
+                        dimensions.get(dimensionsWritten).location().toString());
+                dimensionsWritten++;
+            }
+            flushPreamble();
+        }
+
+        private void flushPreamble() throws IOException {
+            preamble.flip();
+            while (preamble.hasRemaining()) {
+                channel.write(preamble);
+            }
+            preamble.clear();
+        }
+
+        private void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close audit log file", e);
+            }
+            channel = null;
+        }
+    }
+}
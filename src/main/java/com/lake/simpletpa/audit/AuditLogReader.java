@@ -0,0 +1,218 @@
+package com.lake.simpletpa.audit;
+
+import com.lake.simpletpa.RequestType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Offline query tool for the audit log. Needs nothing but the mod jar:
+ * <pre>
+ * java -cp simpletpa.jar com.lake.simpletpa.audit.AuditLogReader
+ *      [--player &lt;uuid&gt;] [--from &lt;time&gt;] [--to &lt;time&gt;] &lt;file or directory&gt;...
+ * </pre>
+ * Times are epoch milliseconds or local date-times like 2024-05-01T18:30.
+ * Files are memory-mapped and filtered on the raw record fields, so only
+ * matching records are ever decoded.
+ */
+public final class AuditLogReader {
+    private static final RequestType[] TYPES = RequestType.values();
+
+    private final UUID player;
+    private final long from;
+    private final long to;
+    private final PrintStream out;
+    // Names seen in PLAYER and DIMENSION records so far
+    private final Map<UUID, String> playerNames;
+    private final Map<Integer, String> dimensionNames;
+
+    /**
+     * @param player Only records involving this player, or null for all
+     * @param from   Earliest record time, inclusive (epoch ms)
+     * @param to     Latest record time, inclusive (epoch ms)
+     * @param out    Where matching records are printed
+     */
+    public AuditLogReader(UUID player, long from, long to, PrintStream out) {
+        this.player = player;
+        this.from = from;
+        this.to = to;
+        this.out = out;
+        this.playerNames = new HashMap<>();
+        this.dimensionNames = new HashMap<>();
+    }
+
+    public static void main(String[] args) throws IOException {
+        UUID player = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        List<Path> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--player" -> player = UUID.fromString(args[++i]);
+                case "--from" -> from = parseTime(args[++i]);
+                case "--to" -> to = parseTime(args[++i]);
+                default -> addFiles(Paths.get(args[i]), files);
+            }
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("Usage: AuditLogReader [--player <uuid>] [--from <time>] [--to <time>]"
+                    + " <file or directory>...");
+            System.exit(1);
+        }
+
+        AuditLogReader reader = new AuditLogReader(player, from, to, System.out);
+        for (Path file : files) {
+            reader.scan(file);
+        }
+    }
+
+    /**
+     * Prints the matching records of one file.
+     * Player and dimension names found in the file are remembered for later files.
+     *
+     * @return Number of matching records
+     */
+    public int scan(Path file) throws IOException {
+        int matches = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.limit() < AuditFormat.HEADER_SIZE || data.getInt(0) != AuditFormat.MAGIC) {
+                System.err.println("Skipping " + file + ": not an audit log");
+                return 0;
+            }
+
+            // Offsets below assume this layout; a bad record size would also stall the scan
+            int version = Short.toUnsignedInt(data.getShort(4));
+            int recordSize = Short.toUnsignedInt(data.getShort(6));
+            if (version != AuditFormat.VERSION || recordSize != AuditFormat.RECORD_SIZE) {
+                System.err.println("Skipping " + file + ": unsupported audit log version " + version
+                        + " (record size " + recordSize + ")");
+                return 0;
+            }
+            long mostSig = player != null ? player.getMostSignificantBits() : 0L;
+            long leastSig = player != null ? player.getLeastSignificantBits() : 0L;
+
+            // A partly written last record is ignored
+            for (int pos = AuditFormat.HEADER_SIZE; pos + recordSize <= data.limit(); pos += recordSize) {
+                int event = data.get(pos + AuditFormat.EVENT);
+
+                // Name records are always read, they are few
+                if (event == AuditFormat.Event.PLAYER.ordinal()) {
+                    playerNames.put(uuid(data, pos + AuditFormat.PLAYER),
+                            name(data, pos + AuditFormat.PLAYER_NAME, AuditFormat.PLAYER_NAME_SIZE));
+                    continue;
+                }
+                if (event == AuditFormat.Event.DIMENSION.ordinal()) {
+                    dimensionNames.put(Short.toUnsignedInt(data.getShort(pos + AuditFormat.DIMENSION)),
+                            name(data, pos + AuditFormat.PAYLOAD, AuditFormat.DIMENSION_NAME_SIZE));
+                    continue;
+                }
+
+                long time = data.getLong(pos + AuditFormat.TIME);
+                if (time < from || time > to) {
+                    continue;
+                }
+                if (player != null && !matches(data, pos + AuditFormat.PLAYER, mostSig, leastSig)
+                        && !matches(data, pos + AuditFormat.OTHER, mostSig, leastSig)) {
+                    continue;
+                }
+
+                out.println(format(data, pos, time, event));
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private String format(ByteBuffer data, int pos, long time, int eventId) {
+        AuditFormat.Event event = AuditFormat.Event.of(eventId);
+        int type = Byte.toUnsignedInt(data.get(pos + AuditFormat.TYPE));
+        StringBuilder line = new StringBuilder()
+                .append(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()))
+                .append(' ').append(event != null ? event.name() : "UNKNOWN(" + eventId + ")");
+
+        if (type != AuditFormat.NO_TYPE && type < TYPES.length) {
+            line.append(' ').append(TYPES[type]);
+        }
+
+        line.append(' ').append(player(uuid(data, pos + AuditFormat.PLAYER)));
+        UUID other = uuid(data, pos + AuditFormat.OTHER);
+        if (other.getMostSignificantBits() != 0L || other.getLeastSignificantBits() != 0L) {
+            line.append(event == AuditFormat.Event.TELEPORT ? " with " : " -> ").append(player(other));
+        }
+
+        if (event == AuditFormat.Event.TELEPORT) {
+            int dimension = Short.toUnsignedInt(data.getShort(pos + AuditFormat.DIMENSION));
+            line.append(" to ").append(dimensionNames.getOrDefault(dimension, "dimension#" + dimension))
+                    .append(' ').append(data.getInt(pos + AuditFormat.X))
+                    .append(' ').append(data.getInt(pos + AuditFormat.Y))
+                    .append(' ').append(data.getInt(pos + AuditFormat.Z));
+        }
+        return line.toString();
+    }
+
+    private String player(UUID uuid) {
+        String name = playerNames.get(uuid);
+        return name != null ? name + " (" + uuid + ")" : uuid.toString();
+    }
+
+    private static boolean matches(ByteBuffer data, int pos, long mostSig, long leastSig) {
+        return data.getLong(pos) == mostSig && data.getLong(pos + 8) == leastSig;
+    }
+
+    private static UUID uuid(ByteBuffer data, int pos) {
+        return new UUID(data.getLong(pos), data.getLong(pos + 8));
+    }
+
+    private static String name(ByteBuffer data, int pos, int size) {
+        byte[] bytes = new byte[size];
+        data.get(pos, bytes);
+        int length = 0;
+        while (length < size && bytes[length] != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static long parseTime(String value) {
+        if (value.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(value);
+        }
+        return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Adds a file, or every audit file in a directory in name (and so creation) order.
+     */
+    private static void addFiles(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (Stream<Path> entries = Files.list(path)) {
+            entries.filter(entry -> entry.getFileName().toString().endsWith(".bin"))
+                    .sorted()
+                    .forEach(files::add);
+        }
+    }
+}
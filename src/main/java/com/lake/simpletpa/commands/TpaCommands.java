@@ -1,24 +1,48 @@
 package com.lake.simpletpa.commands;
 
+import com.lake.simpletpa.BackHistory;
+import com.lake.simpletpa.PlayerSessions;
 import com.lake.simpletpa.RequestType;
 import com.lake.simpletpa.TeleportRequest;
-import com.lake.simpletpa.TpaConfig;
 import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.TpaSettings;
 import com.lake.simpletpa.WarmupManager;
-import com.lake.simpletpa.WarmupTask;
+import com.lake.simpletpa.audit.AuditFormat;
+import com.lake.simpletpa.audit.AuditLog;
+import com.lake.simpletpa.network.RemotePlayer;
+import com.lake.simpletpa.network.TpaMessage;
+import com.lake.simpletpa.network.TpaNetwork;
+import com.lake.simpletpa.stats.AllocationMeter;
+import com.lake.simpletpa.stats.LatencyHistogram;
+import com.lake.simpletpa.stats.StatCounter;
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.MessageTemplate;
+import com.lake.simpletpa.util.MessageTemplates;
 import com.lake.simpletpa.util.MessageUtils;
+import com.lake.simpletpa.util.TpaClock;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.arguments.EntityArgument;
-import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
-import net.minecraft.network.chat.HoverEvent;
-import net.minecraft.network.chat.Style;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles registration and execution of all TPA commands.
@@ -32,26 +56,57 @@ public class TpaCommands {
                 // /tpa <player>
                 dispatcher.register(
                                 Commands.literal("tpa")
-                                                .then(Commands.argument("player", EntityArgument.player())
+                                                .then(Commands.argument("player", StringArgumentType.word())
+                                                                .suggests(TpaCommands::suggestTargets)
                                                                 .executes(TpaCommands::executeTpa))
                                                 .then(Commands.literal("toggle")
-                                                                .executes(TpaCommands::executeTpaToggle)));
+                                                                .executes(TpaCommands::executeTpaToggle))
+                                                .then(Commands.literal("stats")
+                                                                .requires(source -> source.hasPermission(2))
+                                                                .executes(TpaCommands::executeTpaStats)));
 
-                // /tpahere <player>
+                // /tpahere <player> | /tpahere group <targets>
                 dispatcher.register(
                                 Commands.literal("tpahere")
-                                                .then(Commands.argument("player", EntityArgument.player())
+                                                .then(Commands.literal("group")
+                                                                .requires(source -> source.hasPermission(2))
+                                                                .then(Commands.argument("targets", EntityArgument.players())
+                                                                                .executes(TpaCommands::executeTpaHereGroup)))
+                                                .then(Commands.argument("player", StringArgumentType.word())
+                                                                .suggests(TpaCommands::suggestTargets)
                                                                 .executes(TpaCommands::executeTpaHere)));
 
-                // /tpaccept
+                // /tpaccept [player]
                 dispatcher.register(
                                 Commands.literal("tpaccept")
-                                                .executes(TpaCommands::executeTpAccept));
+                                                .executes(TpaCommands::executeTpAccept)
+                                                .then(Commands.argument("player", StringArgumentType.word())
+                                                                .suggests(TpaCommands::suggestPlayers)
+                                                                .executes(TpaCommands::executeTpAcceptFrom)));
 
-                // /tpdeny
+                // /tpdeny [player]
                 dispatcher.register(
                                 Commands.literal("tpdeny")
-                                                .executes(TpaCommands::executeTpDeny));
+                                                .executes(TpaCommands::executeTpDeny)
+                                                .then(Commands.argument("player", StringArgumentType.word())
+                                                                .suggests(TpaCommands::suggestPlayers)
+                                                                .executes(TpaCommands::executeTpDenyFrom)));
+
+                // /tpacancel [player]
+                dispatcher.register(
+                                Commands.literal("tpacancel")
+                                                .executes(TpaCommands::executeTpaCancel)
+                                                .then(Commands.argument("player", StringArgumentType.word())
+                                                                .suggests(TpaCommands::suggestPlayers)
+                                                                .executes(TpaCommands::executeTpaCancelTo)));
+
+                // /back [n]
+                dispatcher.register(
+                                Commands.literal("back")
+                                                .executes(context -> executeBack(context, 1))
+                                                .then(Commands.argument("n", IntegerArgumentType.integer(1))
+                                                                .executes(context -> executeBack(context,
+                                                                                IntegerArgumentType.getInteger(context, "n")))));
         }
 
         /**
@@ -59,173 +114,294 @@ public class TpaCommands {
          */
         private static int executeTpa(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
                 ServerPlayer sender = context.getSource().getPlayerOrException();
-                ServerPlayer target = EntityArgument.getPlayer(context, "player");
 
-                // Can't teleport to yourself
-                if (sender.getUUID().equals(target.getUUID())) {
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.cannotTeleportSelf.get());
-                        return 0;
-                }
+                return sendRequest(sender, StringArgumentType.getString(context, "player"), RequestType.TPA);
+        }
 
+        /**
+         * Executes /tpahere command - sender wants target to teleport to them.
+         */
+        private static int executeTpaHere(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+                ServerPlayer sender = context.getSource().getPlayerOrException();
+
+                return sendRequest(sender, StringArgumentType.getString(context, "player"),
+                                RequestType.TPA_HERE);
+        }
+
+        /**
+         * Executes /tpahere group - sends a /tpahere request to every selected player.
+         * Targets are filtered in one pass, the request text is rendered once per
+         * language and all requests are stored with a single bulk insert. Each
+         * target accepts with the usual /tpaccept and costs the sender one
+         * request of their flood limit, as a separate /tpahere would.
+         */
+        private static int executeTpaHereGroup(CommandContext<CommandSourceStack> context)
+                        throws CommandSyntaxException {
+                ServerPlayer sender = context.getSource().getPlayerOrException();
+                Collection<ServerPlayer> selected = EntityArgument.getPlayers(context, "targets");
                 TpaManager manager = TpaManager.getInstance();
+                TpaSettings settings = TpaSettings.get();
+                MessageTemplates messages = MessageTemplates.get(settings, sender);
 
-                // Check if target is ignoring requests
-                if (manager.isIgnoring(target.getUUID())) {
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.targetIgnoring.get());
+                if (manager.isOnCooldown(sender.getUUID())) {
+                        MessageUtils.send(sender, messages.onCooldown, manager.getRemainingCooldown(sender.getUUID()));
                         return 0;
                 }
 
-                // Check cooldown
-                if (manager.isOnCooldown(sender.getUUID())) {
-                        long remaining = manager.getRemainingCooldown(sender.getUUID());
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.onCooldown.get(), remaining);
+                // One pass over the selection: skip the sender, ignoring and flooded targets
+                List<ServerPlayer> targets = new ArrayList<>(selected.size());
+                List<TeleportRequest> requests = new ArrayList<>(selected.size());
+                boolean flooded = false;
+                for (ServerPlayer target : selected) {
+                        UUID targetUuid = target.getUUID();
+                        if (targetUuid.equals(sender.getUUID()) || manager.isIgnoring(targetUuid)) {
+                                continue;
+                        }
+                        if (!manager.tryAcquireRequest(sender.getUUID(), targetUuid, settings)) {
+                                flooded = true;
+                                continue;
+                        }
+                        targets.add(target);
+                        requests.add(new TeleportRequest(sender.getUUID(), targetUuid, RequestType.TPA_HERE,
+                                        settings));
+                }
+
+                if (requests.isEmpty()) {
+                        if (!flooded) {
+                                MessageUtils.send(sender, messages.noGroupTargets);
+                        } else if (manager.tryAcquireFloodNotice(sender.getUUID(), settings)) {
+                                sender.sendSystemMessage(messages.requestFlooded);
+                        }
                         return 0;
                 }
 
-                // Create and store the request
-                TeleportRequest request = new TeleportRequest(sender.getUUID(), target.getUUID(), RequestType.TPA);
-                manager.addRequest(request);
-                manager.setCooldown(sender.getUUID());
+                manager.addRequests(sender.getUUID(), requests, settings);
+                manager.setCooldown(sender.getUUID(), settings);
+                TpaStats.getInstance().requestsSent.add(requests.size());
+
+                // Chat components are immutable once sent, so targets with the same language share one
+                String senderName = sender.getName().getString();
+                Map<MessageTemplates, Component> rendered = new IdentityHashMap<>();
+                for (ServerPlayer target : targets) {
+                        Component message = rendered.computeIfAbsent(MessageTemplates.get(settings, target),
+                                        templates -> templates.requestReceivedHere.render(senderName)
+                                                        .append(templates.requestActions(senderName)));
+                        target.sendSystemMessage(message);
+                }
 
-                // Notify sender
-                MessageUtils.send(sender, TpaConfig.MESSAGES.requestSent.get(), target.getName().getString());
-
-                // Create clickable message for target
-                Component acceptButton = Component.literal(MessageUtils.formatColors("&a[Aceptar]"))
-                                .setStyle(Style.EMPTY
-                                                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND,
-                                                                "/tpaccept"))
-                                                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
-                                                                Component.literal("Clic para aceptar"))));
-
-                Component denyButton = Component.literal(MessageUtils.formatColors("&c[Rechazar]"))
-                                .setStyle(Style.EMPTY
-                                                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND,
-                                                                "/tpdeny"))
-                                                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
-                                                                Component.literal("Clic para rechazar"))));
-
-                String message = TpaConfig.MESSAGES.requestReceived.get();
-                Component fullMessage = Component
-                                .literal(MessageUtils
-                                                .formatColors(String.format(message, sender.getName().getString())))
-                                .append(Component.literal(" "))
-                                .append(acceptButton)
-                                .append(Component.literal(" "))
-                                .append(denyButton);
-
-                target.sendSystemMessage(fullMessage);
-
-                int expirationTime = TpaConfig.GENERAL.requestExpiration.get();
-                target.sendSystemMessage(Component
-                                .literal(MessageUtils.formatColors("&7Expira en " + expirationTime + " segundos.")));
+                MessageUtils.send(sender, messages.groupRequestSent, requests.size());
+                return requests.size();
+        }
 
-                return 1;
+        /**
+         * Suggests the players online on this node and on the rest of the network
+         * whose name starts with what was typed so far.
+         */
+        private static CompletableFuture<Suggestions> suggestPlayers(CommandContext<CommandSourceStack> context,
+                        SuggestionsBuilder builder) {
+                PlayerSessions.getInstance().getNames().forEachWithPrefix(builder.getRemaining(),
+                                (name, uuid) -> builder.suggest(name));
+                return builder.buildFuture();
         }
 
         /**
-         * Executes /tpahere command - sender wants target to teleport to them.
+         * Suggests who a request can be sent to: like suggestPlayers, but
+         * leaving out the executor and players who ignore requests.
          */
-        private static int executeTpaHere(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
-                ServerPlayer sender = context.getSource().getPlayerOrException();
-                ServerPlayer target = EntityArgument.getPlayer(context, "player");
+        private static CompletableFuture<Suggestions> suggestTargets(CommandContext<CommandSourceStack> context,
+                        SuggestionsBuilder builder) {
+                Entity executor = context.getSource().getEntity();
+                UUID self = executor != null ? executor.getUUID() : null;
+                TpaManager manager = TpaManager.getInstance();
 
-                // Can't teleport yourself to yourself
-                if (sender.getUUID().equals(target.getUUID())) {
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.cannotTeleportSelf.get());
-                        return 0;
+                PlayerSessions.getInstance().getNames().forEachWithPrefix(builder.getRemaining(), (name, uuid) -> {
+                        if (!uuid.equals(self) && !manager.isIgnoring(uuid)) {
+                                builder.suggest(name);
+                        }
+                });
+                return builder.buildFuture();
+        }
+
+        /**
+         * Finds the UUID of a player online on this node or elsewhere in the network.
+         *
+         * @return The UUID, or null if no such player is online
+         */
+        private static UUID findPlayer(String name) {
+                return PlayerSessions.getInstance().getNames().get(name);
+        }
+
+        /**
+         * Finds a player online on another node.
+         * Only while a transport is connected: SimpleTPA ships none, so unless
+         * another mod plugs one in, the commands never take the network paths.
+         *
+         * @return The remote player, or null
+         */
+        private static RemotePlayer findRemote(UUID playerUuid) {
+                TpaNetwork network = TpaNetwork.getInstance();
+                return network.isConnected() ? network.getRemote(playerUuid) : null;
+        }
+
+        /**
+         * Resolves the target of /tpa or /tpahere, which may be on another node.
+         */
+        private static int sendRequest(ServerPlayer sender, String targetName, RequestType type) {
+                UUID targetUuid = findPlayer(targetName);
+                ServerPlayer target = targetUuid != null ? PlayerSessions.getInstance().get(targetUuid) : null;
+                if (target != null) {
+                        return sendRequest(sender, targetUuid, target.getName().getString(), target, type);
+                }
+
+                RemotePlayer remote = targetUuid != null ? findRemote(targetUuid) : null;
+                if (remote != null) {
+                        return sendRequest(sender, remote.getUuid(), remote.getName(), null, type);
                 }
 
+                MessageUtils.send(sender, MessageTemplates.get(sender).playerOffline);
+                return 0;
+        }
+
+        /**
+         * Validates, stores and announces a teleport request.
+         * Shared request-dispatch path for /tpa and /tpahere; a target on another
+         * node gets the request through TpaNetwork, whose node also checks
+         * whether they ignore requests.
+         * The settings snapshot is read once, so a reload halfway through
+         * cannot mix limits, expiry, cooldown and texts of two configs.
+         *
+         * @param target The target player, or null if they are on another node
+         */
+        private static int sendRequest(ServerPlayer sender, UUID targetUuid, String targetName, ServerPlayer target,
+                        RequestType type) {
                 TpaManager manager = TpaManager.getInstance();
+                TpaSettings settings = TpaSettings.get();
+                MessageTemplates messages = MessageTemplates.get(settings, sender);
+
+                // Can't teleport to yourself
+                if (sender.getUUID().equals(targetUuid)) {
+                        MessageUtils.send(sender, messages.cannotTeleportSelf);
+                        return 0;
+                }
 
                 // Check if target is ignoring requests
-                if (manager.isIgnoring(target.getUUID())) {
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.targetIgnoring.get());
+                if (target != null && manager.isIgnoring(targetUuid)) {
+                        MessageUtils.send(sender, messages.targetIgnoring);
                         return 0;
                 }
 
                 // Check cooldown
                 if (manager.isOnCooldown(sender.getUUID())) {
                         long remaining = manager.getRemainingCooldown(sender.getUUID());
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.onCooldown.get(), remaining);
+                        MessageUtils.send(sender, messages.onCooldown, remaining);
+                        return 0;
+                }
+
+                // Flood protection, once the attempt would otherwise go through
+                if (!manager.tryAcquireRequest(sender.getUUID(), targetUuid, settings)) {
+                        if (manager.tryAcquireFloodNotice(sender.getUUID(), settings)) {
+                                sender.sendSystemMessage(messages.requestFlooded);
+                        }
                         return 0;
                 }
 
                 // Create and store the request
-                TeleportRequest request = new TeleportRequest(sender.getUUID(), target.getUUID(), RequestType.TPA_HERE);
-                manager.addRequest(request);
-                manager.setCooldown(sender.getUUID());
+                TeleportRequest request = new TeleportRequest(sender.getUUID(), targetUuid, type, settings);
+                manager.addRequest(request, settings);
+                manager.setCooldown(sender.getUUID(), settings);
+                TpaStats.getInstance().requestsSent.increment();
 
                 // Notify sender
-                MessageUtils.send(sender, TpaConfig.MESSAGES.requestSent.get(), target.getName().getString());
-
-                // Create clickable message for target
-                Component acceptButton = Component.literal(MessageUtils.formatColors("&a[Aceptar]"))
-                                .setStyle(Style.EMPTY
-                                                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND,
-                                                                "/tpaccept"))
-                                                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
-                                                                Component.literal("Clic para aceptar"))));
-
-                Component denyButton = Component.literal(MessageUtils.formatColors("&c[Rechazar]"))
-                                .setStyle(Style.EMPTY
-                                                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND,
-                                                                "/tpdeny"))
-                                                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
-                                                                Component.literal("Clic para rechazar"))));
-
-                String message = TpaConfig.MESSAGES.requestReceivedHere.get();
-                Component fullMessage = Component
-                                .literal(MessageUtils
-                                                .formatColors(String.format(message, sender.getName().getString())))
-                                .append(Component.literal(" "))
-                                .append(acceptButton)
-                                .append(Component.literal(" "))
-                                .append(denyButton);
-
-                target.sendSystemMessage(fullMessage);
-
-                int expirationTime = TpaConfig.GENERAL.requestExpiration.get();
-                target.sendSystemMessage(Component
-                                .literal(MessageUtils.formatColors("&7Expira en " + expirationTime + " segundos.")));
+                MessageUtils.send(sender, messages.requestSent, targetName);
+
+                String senderName = sender.getName().getString();
+                if (target == null) {
+                        TpaNetwork.getInstance().send(TpaMessage.Kind.REQUEST, request, senderName);
+                        return 1;
+                }
+
+                // Request text, accept/deny buttons and expiry line go out as one message
+                MessageTemplates targetMessages = MessageTemplates.get(settings, target);
+                MessageTemplate received = type == RequestType.TPA
+                                ? targetMessages.requestReceived
+                                : targetMessages.requestReceivedHere;
+                target.sendSystemMessage(received.render(senderName)
+                                .append(targetMessages.requestActions(senderName)));
 
                 return 1;
         }
 
         /**
-         * Executes /tpaccept command - accepts a pending teleport request.
+         * Executes /tpaccept command - accepts the newest pending teleport request.
          */
         private static int executeTpAccept(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
                 ServerPlayer executor = context.getSource().getPlayerOrException();
                 TeleportRequest request = TpaManager.getInstance().getRequest(executor.getUUID());
 
+                return acceptRequest(context, executor, request);
+        }
+
+        /**
+         * Executes /tpaccept <player> command - accepts the request sent by a specific player.
+         */
+        private static int executeTpAcceptFrom(CommandContext<CommandSourceStack> context)
+                        throws CommandSyntaxException {
+                ServerPlayer executor = context.getSource().getPlayerOrException();
+                UUID sender = findPlayer(StringArgumentType.getString(context, "player"));
+                TeleportRequest request = sender != null
+                                ? TpaManager.getInstance().getRequest(executor.getUUID(), sender)
+                                : null;
+
+                return acceptRequest(context, executor, request);
+        }
+
+        /**
+         * Accepts a pending request and starts the teleport.
+         */
+        private static int acceptRequest(CommandContext<CommandSourceStack> context, ServerPlayer executor,
+                        TeleportRequest request) {
+                TpaManager manager = TpaManager.getInstance();
+
                 // Check if there's a pending request
                 if (request == null) {
-                        MessageUtils.send(executor, TpaConfig.MESSAGES.noRequest.get());
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
                         return 0;
                 }
 
                 // Check if request has expired
                 if (request.isExpired()) {
-                        TpaManager.getInstance().removeRequest(executor.getUUID());
-                        MessageUtils.send(executor, TpaConfig.MESSAGES.requestExpired.get());
+                        manager.removeRequest(request);
+                        MessageUtils.send(executor, MessageTemplates.get(executor).requestExpired);
                         return 0;
                 }
 
                 // Get the sender
-                ServerPlayer sender = context.getSource().getServer().getPlayerList().getPlayer(request.getSender());
+                ServerPlayer sender = PlayerSessions.getInstance().get(request.getSender());
 
                 if (sender == null) {
-                        TpaManager.getInstance().removeRequest(executor.getUUID());
-                        MessageUtils.send(executor, TpaConfig.MESSAGES.playerOffline.get());
+                        RemotePlayer remote = findRemote(request.getSender());
+                        if (remote != null) {
+                                return acceptRemoteRequest(executor, request, remote);
+                        }
+
+                        manager.removeRequest(request);
+                        MessageUtils.send(executor, MessageTemplates.get(executor).playerOffline);
                         return 0;
                 }
 
-                // Remove the request
-                TpaManager.getInstance().removeRequest(executor.getUUID());
+                // Remove the request (it may have expired or been accepted in the meantime)
+                if (!manager.removeRequest(request)) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
+                        return 0;
+                }
+
+                TpaStats stats = TpaStats.getInstance();
+                stats.requestsAccepted.increment();
+                AuditLog.getInstance().request(AuditFormat.Event.ACCEPT, request);
+                stats.requestToAccept.record((TpaClock.now() - request.getCreatedTime()) * 1_000_000L);
 
                 // Notify sender
-                MessageUtils.send(sender, TpaConfig.MESSAGES.requestAccepted.get(), executor.getName().getString());
+                MessageUtils.send(sender, MessageTemplates.get(sender).requestAccepted, executor.getName().getString());
 
                 // Determine who teleports and where
                 ServerPlayer teleportingPlayer;
@@ -241,56 +417,163 @@ public class TpaCommands {
                         destinationPlayer = sender;
                 }
 
-                // Check warmup configuration
-                int warmupSeconds = TpaConfig.GENERAL.teleportWarmup.get();
+                WarmupManager.getInstance().startTeleport(teleportingPlayer, destinationPlayer.getUUID(),
+                                request.getType(), destinationPlayer.serverLevel(), destinationPlayer.position(),
+                                destinationPlayer.getYRot(), destinationPlayer.getXRot());
 
-                if (warmupSeconds == 0) {
-                        // Instant teleport
-                        performTeleport(teleportingPlayer, destinationPlayer);
-                } else {
-                        // Start warmup
-                        WarmupTask warmupTask = new WarmupTask(
-                                        teleportingPlayer.getUUID(),
-                                        destinationPlayer.getUUID(),
-                                        request.getType(),
-                                        teleportingPlayer.position(),
-                                        destinationPlayer.serverLevel(),
-                                        destinationPlayer.position(),
-                                        destinationPlayer.getYRot(),
-                                        destinationPlayer.getXRot());
-
-                        WarmupManager.getInstance().startWarmup(warmupTask);
-                        MessageUtils.send(teleportingPlayer, TpaConfig.MESSAGES.warmupStart.get(), warmupSeconds);
+                return 1;
+        }
+
+        /**
+         * Accepts a request sent from another node.
+         * Whoever teleports is handed over to the other node through the proxy
+         * and goes through the usual warmup there once they arrive.
+         * The sender is only told the request was accepted once the hand-over
+         * has started, a failed transfer leaves the request pending.
+         */
+        private static int acceptRemoteRequest(ServerPlayer executor, TeleportRequest request, RemotePlayer sender) {
+                TpaNetwork network = TpaNetwork.getInstance();
+                TpaManager manager = TpaManager.getInstance();
+
+                if (manager.getRequest(request.getTarget(), request.getSender()) != request) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
+                        return 0;
                 }
 
+                // Executor goes to the sender's node
+                if (request.getType() == RequestType.TPA_HERE && !network.transfer(executor, sender.getNode())) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).transferFailed);
+                        return 0;
+                }
+
+                manager.removeRequest(request);
+
+                TpaStats stats = TpaStats.getInstance();
+                stats.requestsAccepted.increment();
+                AuditLog.getInstance().request(AuditFormat.Event.ACCEPT, request);
+                stats.requestToAccept.record((TpaClock.now() - request.getCreatedTime()) * 1_000_000L);
+
+                if (request.getType() == RequestType.TPA) {
+                        // Sender comes to this node
+                        network.expectArrival(request.getSender(), executor.getUUID(), request.getType());
+                }
+                network.send(TpaMessage.Kind.ACCEPT, request, executor.getName().getString());
+
                 return 1;
         }
 
         /**
-         * Executes /tpdeny command - denies a pending teleport request.
+         * Executes /tpdeny command - denies the newest pending teleport request.
          */
         private static int executeTpDeny(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
                 ServerPlayer executor = context.getSource().getPlayerOrException();
                 TeleportRequest request = TpaManager.getInstance().getRequest(executor.getUUID());
 
+                return denyRequest(context, executor, request);
+        }
+
+        /**
+         * Executes /tpdeny <player> command - denies the request sent by a specific player.
+         */
+        private static int executeTpDenyFrom(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+                ServerPlayer executor = context.getSource().getPlayerOrException();
+                UUID sender = findPlayer(StringArgumentType.getString(context, "player"));
+                TeleportRequest request = sender != null
+                                ? TpaManager.getInstance().getRequest(executor.getUUID(), sender)
+                                : null;
+
+                return denyRequest(context, executor, request);
+        }
+
+        /**
+         * Denies a pending request and notifies both players.
+         */
+        private static int denyRequest(CommandContext<CommandSourceStack> context, ServerPlayer executor,
+                        TeleportRequest request) {
                 // Check if there's a pending request
-                if (request == null) {
-                        MessageUtils.send(executor, TpaConfig.MESSAGES.noRequest.get());
+                if (request == null || !TpaManager.getInstance().removeRequest(request)) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
                         return 0;
                 }
 
                 // Get the sender to notify them
-                ServerPlayer sender = context.getSource().getServer().getPlayerList().getPlayer(request.getSender());
+                ServerPlayer sender = PlayerSessions.getInstance().get(request.getSender());
 
                 if (sender != null) {
-                        MessageUtils.send(sender, TpaConfig.MESSAGES.requestDenied.get());
+                        MessageUtils.send(sender, MessageTemplates.get(sender).requestDenied);
+                } else if (findRemote(request.getSender()) != null) {
+                        TpaNetwork.getInstance().send(TpaMessage.Kind.DENY, request, null);
                 }
 
-                MessageUtils.send(executor, TpaConfig.MESSAGES.requestDenied.get());
+                MessageUtils.send(executor, MessageTemplates.get(executor).requestDenied);
+                TpaStats.getInstance().requestsDenied.increment();
+                AuditLog.getInstance().request(AuditFormat.Event.DENY, request);
 
-                // Remove the request
-                TpaManager.getInstance().removeRequest(executor.getUUID());
+                return 1;
+        }
 
+        /**
+         * Executes /tpacancel command - cancels every request the executor has sent.
+         */
+        private static int executeTpaCancel(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+                ServerPlayer executor = context.getSource().getPlayerOrException();
+                int cancelled = 0;
+
+                for (TeleportRequest request : TpaManager.getInstance().getOutgoingRequests(executor.getUUID())) {
+                        cancelled += cancelRequest(context, executor, request);
+                }
+
+                if (cancelled == 0) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
+                }
+                return cancelled;
+        }
+
+        /**
+         * Executes /tpacancel <player> command - cancels the request sent to a specific player.
+         */
+        private static int executeTpaCancelTo(CommandContext<CommandSourceStack> context)
+                        throws CommandSyntaxException {
+                ServerPlayer executor = context.getSource().getPlayerOrException();
+                UUID target = findPlayer(StringArgumentType.getString(context, "player"));
+                TeleportRequest request = target != null
+                                ? TpaManager.getInstance().getRequest(target, executor.getUUID())
+                                : null;
+
+                int cancelled = request != null ? cancelRequest(context, executor, request) : 0;
+
+                if (cancelled == 0) {
+                        MessageUtils.send(executor, MessageTemplates.get(executor).noRequest);
+                }
+                return cancelled;
+        }
+
+        /**
+         * Withdraws a request and notifies both players.
+         *
+         * @return 1 if the request was still pending, 0 otherwise
+         */
+        private static int cancelRequest(CommandContext<CommandSourceStack> context, ServerPlayer executor,
+                        TeleportRequest request) {
+                if (!TpaManager.getInstance().removeRequest(request)) {
+                        return 0;
+                }
+                AuditLog.getInstance().request(AuditFormat.Event.CANCEL, request);
+
+                ServerPlayer target = PlayerSessions.getInstance().get(request.getTarget());
+                String targetName = target != null ? target.getName().getString() : "";
+
+                RemotePlayer remote = target == null ? findRemote(request.getTarget()) : null;
+                if (remote != null) {
+                        targetName = remote.getName();
+                        TpaNetwork.getInstance().send(TpaMessage.Kind.CANCEL, request, null);
+                }
+
+                MessageUtils.send(executor, MessageTemplates.get(executor).requestCancelled, targetName);
+                if (target != null) {
+                        MessageUtils.send(target, MessageTemplates.get(target).requestCancelledTarget,
+                                        executor.getName().getString());
+                }
                 return 1;
         }
 
@@ -301,27 +584,129 @@ public class TpaCommands {
                 ServerPlayer player = context.getSource().getPlayerOrException();
                 TpaManager manager = TpaManager.getInstance();
 
-                boolean nowIgnoring = manager.toggleIgnore(player.getUUID());
+                boolean nowIgnoring = manager.toggleIgnore(player);
 
                 if (nowIgnoring) {
-                        MessageUtils.send(player, TpaConfig.MESSAGES.toggleEnabled.get());
+                        MessageUtils.send(player, MessageTemplates.get(player).toggleEnabled);
                 } else {
-                        MessageUtils.send(player, TpaConfig.MESSAGES.toggleDisabled.get());
+                        MessageUtils.send(player, MessageTemplates.get(player).toggleDisabled);
                 }
 
                 return 1;
         }
 
         /**
-         * Performs the actual teleportation.
+         * Executes /back command - returns to where the player teleported from,
+         * n teleports ago. Going back is itself a teleport, so it is recorded too.
+         * It goes through the same cooldown, warmup and safe landing as an
+         * accepted request; like sendRequest it reads the settings snapshot once.
          */
-        private static void performTeleport(ServerPlayer teleportingPlayer, ServerPlayer destinationPlayer) {
-                ServerLevel targetLevel = destinationPlayer.serverLevel();
+        private static int executeBack(CommandContext<CommandSourceStack> context, int steps)
+                        throws CommandSyntaxException {
+                ServerPlayer player = context.getSource().getPlayerOrException();
+                TpaManager manager = TpaManager.getInstance();
+                TpaSettings settings = TpaSettings.get();
+                MessageTemplates messages = MessageTemplates.get(settings, player);
 
-                teleportingPlayer.teleportTo(targetLevel,
-                                destinationPlayer.getX(), destinationPlayer.getY(), destinationPlayer.getZ(),
-                                destinationPlayer.getYRot(), destinationPlayer.getXRot());
+                // Same cooldown as sending a request
+                if (manager.isOnCooldown(player.getUUID())) {
+                        MessageUtils.send(player, messages.onCooldown,
+                                        manager.getRemainingCooldown(player.getUUID()));
+                        return 0;
+                }
+
+                BackHistory.Location location = BackHistory.getInstance().get(player.getUUID(), steps);
+                ServerLevel level = location != null
+                                ? context.getSource().getServer().getLevel(location.dimension())
+                                : null;
+
+                // Unknown step, or the dimension is gone
+                if (level == null) {
+                        MessageUtils.send(player, messages.noBackLocation);
+                        return 0;
+                }
+
+                WarmupManager.getInstance().startTeleport(player, null, null, level,
+                                new Vec3(location.x(), location.y(), location.z()), location.yaw(), location.pitch());
+                manager.setCooldown(player.getUUID(), settings);
+                return 1;
+        }
+
+        /**
+         * Executes /tpa stats command - shows live counters, latencies and memory (operators only).
+         * Labels are in the executor's language, the console gets the default one.
+         */
+        private static int executeTpaStats(CommandContext<CommandSourceStack> context) {
+                CommandSourceStack source = context.getSource();
+                ServerPlayer player = source.getPlayer();
+                MessageTemplates messages = player != null ? MessageTemplates.get(player) : MessageTemplates.get();
+                TpaStats stats = TpaStats.getInstance();
+                TpaManager manager = TpaManager.getInstance();
+                WarmupManager warmups = WarmupManager.getInstance();
+
+                sendStatsLine(source, messages.statsHeader.render());
+                sendCounter(source, messages, "requestsSent", stats.requestsSent);
+                sendCounter(source, messages, "requestsDropped", stats.requestsDropped);
+                sendCounter(source, messages, "requestsAccepted", stats.requestsAccepted);
+                sendCounter(source, messages, "requestsDenied", stats.requestsDenied);
+                sendCounter(source, messages, "requestsExpired", stats.requestsExpired);
+                sendCounter(source, messages, "warmupsCancelled", stats.warmupsCancelled);
+                sendCounter(source, messages, "teleports", stats.teleports);
+                sendCounter(source, messages, "auditDropped", stats.auditDropped);
+
+                sendStatsLine(source, messages.statsLatencyHeader.render());
+                sendHistogram(source, messages, messages.statsLabel("requestToAccept"), stats.requestToAccept);
+                sendHistogram(source, messages, messages.statsLabel("warmupToTeleport"), stats.warmupToTeleport);
+                sendHistogram(source, messages, "teleportTo", stats.teleportTime);
+                sendHistogram(source, messages, "cleanExpired", stats.cleanExpiredTime);
+                sendHistogram(source, messages, "checkWarmups", stats.checkWarmupsTime);
+
+                if (AllocationMeter.isSupported()) {
+                        LatencyHistogram allocated = stats.tickAllocatedBytes;
+                        sendStatsLine(source, messages.statsAllocationHeader.render());
+                        sendStatsLine(source, messages.statsAllocation.render(allocated.getCount(),
+                                        TpaStats.formatBytes(allocated.getMean()),
+                                        TpaStats.formatBytes(allocated.getPercentile(99)),
+                                        TpaStats.formatBytes(allocated.getMax())));
+                }
+
+                sendStatsLine(source, messages.statsMemoryHeader.render());
+                sendMemory(source, messages, "pendingRequests", manager.getRequestCount(),
+                                (long) manager.getRequestCount() * TpaStats.BYTES_PER_REQUEST);
+                sendMemory(source, messages, "cooldowns", manager.getCooldownCount(),
+                                (long) manager.getCooldownCapacity() * TpaStats.BYTES_PER_COOLDOWN_SLOT);
+                sendMemory(source, messages, "ignoringPlayers", manager.getIgnoringCount(),
+                                (long) manager.getIgnoringCount() * TpaStats.BYTES_PER_IGNORING);
+                sendMemory(source, messages, "warmingUpPlayers", warmups.getWarmupCount(),
+                                (long) warmups.getWarmupCount() * TpaStats.BYTES_PER_WARMUP);
+                BackHistory back = BackHistory.getInstance();
+                sendMemory(source, messages, "backHistories", back.getHistoryCount(),
+                                back.getSlotCount() * TpaStats.BYTES_PER_BACK_SLOT);
+
+                return 1;
+        }
+
+        private static void sendCounter(CommandSourceStack source, MessageTemplates messages, String name,
+                        StatCounter counter) {
+                sendStatsLine(source, messages.statsCounter.render(messages.statsLabel(name), counter.getTotal(),
+                                counter.getLastMinute()));
+        }
+
+        private static void sendHistogram(CommandSourceStack source, MessageTemplates messages, String label,
+                        LatencyHistogram histogram) {
+                sendStatsLine(source, messages.statsLatency.render(label, histogram.getCount(),
+                                TpaStats.formatNanos(histogram.getMean()),
+                                TpaStats.formatNanos(histogram.getPercentile(50)),
+                                TpaStats.formatNanos(histogram.getPercentile(99)),
+                                TpaStats.formatNanos(histogram.getMax())));
+        }
+
+        private static void sendMemory(CommandSourceStack source, MessageTemplates messages, String label,
+                        int entries, long bytes) {
+                sendStatsLine(source, messages.statsMemory.render(label, entries, TpaStats.formatBytes(bytes)));
+        }
 
-                MessageUtils.send(teleportingPlayer, TpaConfig.MESSAGES.teleporting.get());
+        private static void sendStatsLine(CommandSourceStack source, Component line) {
+                source.sendSuccess(() -> line, false);
         }
 }
@@ -0,0 +1,56 @@
+package com.lake.simpletpa.network;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport: every node connected to the same Hub receives the
+ * batches published by the others. Meant for tests and simulations running
+ * several nodes in one JVM. Player transfers are not supported.
+ */
+public class LoopbackTransport implements TpaTransport {
+    private final Hub hub;
+    private volatile Consumer<ByteBuffer> receiver;
+
+    private LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    /**
+     * Shared bus the loopback transports publish to.
+     */
+    public static class Hub {
+        private final List<LoopbackTransport> nodes = new CopyOnWriteArrayList<>();
+
+        /**
+         * Connects a new node to this hub.
+         */
+        public LoopbackTransport connect() {
+            LoopbackTransport transport = new LoopbackTransport(this);
+            nodes.add(transport);
+            return transport;
+        }
+    }
+
+    @Override
+    public void publish(ByteBuffer batch) {
+        for (LoopbackTransport node : hub.nodes) {
+            Consumer<ByteBuffer> nodeReceiver = node.receiver;
+            if (node != this && nodeReceiver != null) {
+                nodeReceiver.accept(batch.asReadOnlyBuffer());
+            }
+        }
+    }
+
+    @Override
+    public void setReceiver(Consumer<ByteBuffer> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void close() {
+        hub.nodes.remove(this);
+    }
+}
@@ -0,0 +1,33 @@
+package com.lake.simpletpa.network;
+
+import java.util.UUID;
+
+/**
+ * A player online on another node.
+ */
+public class RemotePlayer {
+    private final UUID uuid;
+    private final String name;
+    private final String node;
+
+    public RemotePlayer(UUID uuid, String name, String node) {
+        this.uuid = uuid;
+        this.name = name;
+        this.node = node;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the id of the node the player is on.
+     */
+    public String getNode() {
+        return node;
+    }
+}
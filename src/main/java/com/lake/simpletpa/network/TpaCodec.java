@@ -0,0 +1,162 @@
+package com.lake.simpletpa.network;
+
+import com.lake.simpletpa.RequestType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary wire format for batches of TpaMessages.
+ * <pre>
+ * batch:   magic u16 | version u8 | node (str) | count u16 | message*
+ * message: kind u8 | type u8 (0xFF = none) | sender 2*i64 | target 2*i64 | name (str)
+ * str:     length u8 | UTF-8 bytes
+ * </pre>
+ * A message is 35 bytes plus the player name; the node id is sent once per batch.
+ */
+public final class TpaCodec {
+    private static final short MAGIC = 0x5450; // "TP"
+    private static final byte VERSION = 1;
+    private static final int NO_TYPE = 0xFF;
+    private static final int MAX_STRING = 255;
+    private static final int MAX_BATCH = 0xFFFF;
+    private static final RequestType[] TYPES = RequestType.values();
+
+    private TpaCodec() {
+    }
+
+    /**
+     * A decoded batch.
+     */
+    public static final class Batch {
+        private final String node;
+        private final List<TpaMessage> messages;
+
+        Batch(String node, List<TpaMessage> messages) {
+            this.node = node;
+            this.messages = messages;
+        }
+
+        /**
+         * Gets the id of the node that sent the batch.
+         */
+        public String getNode() {
+            return node;
+        }
+
+        public List<TpaMessage> getMessages() {
+            return messages;
+        }
+    }
+
+    /**
+     * Encodes messages into a single batch.
+     *
+     * @param node     Id of the sending node
+     * @param messages Messages to send, at most 65535
+     * @return A buffer ready to be read
+     */
+    public static ByteBuffer encode(String node, List<TpaMessage> messages) {
+        if (messages.size() > MAX_BATCH) {
+            throw new IllegalArgumentException("Batch too large: " + messages.size());
+        }
+
+        byte[] nodeBytes = utf8(node);
+        byte[][] names = new byte[messages.size()][];
+        int size = 2 + 1 + 1 + nodeBytes.length + 2;
+
+        for (int i = 0; i < messages.size(); i++) {
+            names[i] = utf8(messages.get(i).getName());
+            size += 1 + 1 + 32 + 1 + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort(MAGIC);
+        buffer.put(VERSION);
+        putString(buffer, nodeBytes);
+        buffer.putShort((short) messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            TpaMessage message = messages.get(i);
+            buffer.put((byte) message.getKind().getId());
+            buffer.put((byte) (message.getType() != null ? message.getType().ordinal() : NO_TYPE));
+            putUuid(buffer, message.getSender());
+            putUuid(buffer, message.getTarget());
+            putString(buffer, names[i]);
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a batch.
+     *
+     * @param buffer The encoded batch; its position is advanced past it
+     * @return The decoded batch
+     * @throws IllegalArgumentException if the data is not a valid batch
+     */
+    public static Batch decode(ByteBuffer buffer) {
+        try {
+            if (buffer.getShort() != MAGIC) {
+                throw new IllegalArgumentException("Not a SimpleTPA batch");
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported batch version " + version);
+            }
+
+            String node = getString(buffer);
+            int count = Short.toUnsignedInt(buffer.getShort());
+            List<TpaMessage> messages = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                TpaMessage.Kind kind = TpaMessage.Kind.byId(Byte.toUnsignedInt(buffer.get()));
+                int type = Byte.toUnsignedInt(buffer.get());
+                UUID sender = getUuid(buffer);
+                UUID target = getUuid(buffer);
+                String name = getString(buffer);
+
+                if (type != NO_TYPE && type >= TYPES.length) {
+                    throw new IllegalArgumentException("Unknown request type " + type);
+                }
+                messages.add(new TpaMessage(kind, type != NO_TYPE ? TYPES[type] : null, sender, target, name));
+            }
+
+            return new Batch(node, messages);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated batch", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING) {
+            throw new IllegalArgumentException("String too long: " + value);
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Byte.toUnsignedInt(buffer.get())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
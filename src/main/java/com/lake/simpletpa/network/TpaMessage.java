@@ -0,0 +1,94 @@
+package com.lake.simpletpa.network;
+
+import com.lake.simpletpa.RequestType;
+
+import java.util.UUID;
+
+/**
+ * A single request lifecycle or presence event exchanged between nodes.
+ */
+public class TpaMessage {
+    /**
+     * What happened. The id is the byte used on the wire.
+     */
+    public enum Kind {
+        // A player sent a request to a player on another node
+        REQUEST(0),
+        ACCEPT(1),
+        DENY(2),
+        // The target ignores requests
+        IGNORED(3),
+        // The sender withdrew the request
+        CANCEL(4),
+        EXPIRE(5),
+        // A player joined or left the sending node
+        JOIN(6),
+        LEAVE(7),
+        // A node asks the others to announce their players
+        SYNC(8);
+
+        private static final Kind[] BY_ID = values();
+
+        private final int id;
+
+        Kind(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public static Kind byId(int id) {
+            if (id < 0 || id >= BY_ID.length) {
+                throw new IllegalArgumentException("Unknown message kind " + id);
+            }
+            return BY_ID[id];
+        }
+    }
+
+    private static final UUID NONE = new UUID(0L, 0L);
+
+    private final Kind kind;
+    private final RequestType type;
+    private final UUID sender;
+    private final UUID target;
+    private final String name;
+
+    /**
+     * Creates a new message.
+     *
+     * @param kind   What happened
+     * @param type   Type of the request, or null for presence messages
+     * @param sender UUID of the request sender (or of the player for presence messages)
+     * @param target UUID of the request target, or null for presence messages
+     * @param name   Name of the sender (or player), or null if not needed
+     */
+    public TpaMessage(Kind kind, RequestType type, UUID sender, UUID target, String name) {
+        this.kind = kind;
+        this.type = type;
+        this.sender = sender != null ? sender : NONE;
+        this.target = target != null ? target : NONE;
+        this.name = name != null ? name : "";
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public RequestType getType() {
+        return type;
+    }
+
+    public UUID getSender() {
+        return sender;
+    }
+
+    public UUID getTarget() {
+        return target;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
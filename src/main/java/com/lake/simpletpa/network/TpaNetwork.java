@@ -0,0 +1,512 @@
+package com.lake.simpletpa.network;
+
+import com.lake.simpletpa.PlayerSessions;
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.TeleportRequest;
+import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.WarmupManager;
+import com.lake.simpletpa.audit.AuditFormat;
+import com.lake.simpletpa.audit.AuditLog;
+import com.lake.simpletpa.util.MessageTemplate;
+import com.lake.simpletpa.util.MessageTemplates;
+import com.lake.simpletpa.util.MessageUtils;
+import com.lake.simpletpa.util.NameTrie;
+import com.lake.simpletpa.util.TpaClock;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import org.slf4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Singleton bridge between this node's TpaManager and the other nodes of a
+ * proxy network.
+ * Keeps a directory of the players online on other nodes, relays requests,
+ * accepts, denies, cancels and expiries involving them, and places players
+ * arriving from another node after an accepted request.
+ * Outgoing messages are batched and published once per tick; incoming
+ * batches are queued by the transport and applied on the server thread.
+ * Without a transport everything stays local.
+ * This is a service provider interface: SimpleTPA ships no transport of its
+ * own and never calls connect() itself. A mod or plugin that provides one
+ * (a broker client, a proxy channel) connects it once the server has started.
+ */
+public class TpaNetwork {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final TpaNetwork INSTANCE = new TpaNetwork();
+
+    // How long a player handed over to this node is expected, in milliseconds
+    private static final long ARRIVAL_TIMEOUT_MS = 60_000L;
+
+    private volatile TpaTransport transport;
+    private volatile String nodeId;
+    // Messages queued since the last flush
+    private final Queue<TpaMessage> outgoing;
+    // Batches received since the last tick
+    private final Queue<ByteBuffer> incoming;
+    // Reused every tick to collect the messages of a batch
+    private final List<TpaMessage> batch;
+    // Players on other nodes; their names are indexed in PlayerSessions
+    private final Map<UUID, RemotePlayer> remotePlayers;
+    // Players expected from another node -> arrival (server thread only)
+    private final Map<UUID, Arrival> arrivals;
+    // Earliest arrival deadline, so idle ticks skip the sweep (server thread only)
+    private long nextArrivalDeadline = Long.MAX_VALUE;
+
+    private TpaNetwork() {
+        this.outgoing = new ConcurrentLinkedQueue<>();
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.batch = new ArrayList<>();
+        this.remotePlayers = new ConcurrentHashMap<>();
+        this.arrivals = new HashMap<>();
+    }
+
+    /**
+     * Gets the singleton instance of TpaNetwork.
+     */
+    public static TpaNetwork getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Joins a network through a transport and announces the local players.
+     *
+     * @param nodeId    Unique id of this node, as known to the proxy
+     * @param transport The transport to use
+     * @param server    The Minecraft server instance
+     */
+    public void connect(String nodeId, TpaTransport transport, MinecraftServer server) {
+        disconnect();
+
+        this.nodeId = nodeId;
+        transport.setReceiver(incoming::offer);
+        this.transport = transport;
+
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            send(new TpaMessage(TpaMessage.Kind.JOIN, null, player.getUUID(), null, player.getName().getString()));
+        }
+        send(new TpaMessage(TpaMessage.Kind.SYNC, null, null, null, null));
+    }
+
+    /**
+     * Leaves the network, if connected, and forgets the remote players.
+     */
+    public void disconnect() {
+        TpaTransport current = transport;
+        transport = null;
+        if (current != null) {
+            current.close();
+        }
+        clear();
+    }
+
+    /**
+     * Drops all queued messages, remote players and expected arrivals.
+     */
+    public void clear() {
+        outgoing.clear();
+        incoming.clear();
+        batch.clear();
+        NameTrie names = PlayerSessions.getInstance().getNames();
+        TpaManager manager = TpaManager.getInstance();
+        for (RemotePlayer player : remotePlayers.values()) {
+            names.remove(player.getName(), player.getUuid());
+            manager.removeLimits(player.getUuid());
+        }
+        remotePlayers.clear();
+        arrivals.clear();
+        nextArrivalDeadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether this node is connected to a network.
+     */
+    public boolean isConnected() {
+        return transport != null;
+    }
+
+    /**
+     * Gets a player online on another node.
+     *
+     * @param playerUuid UUID of the player
+     * @return The remote player, or null if not known
+     */
+    public RemotePlayer getRemote(UUID playerUuid) {
+        return remotePlayers.get(playerUuid);
+    }
+
+    /**
+     * Gets every player known to be online on other nodes.
+     */
+    public Collection<RemotePlayer> getRemotePlayers() {
+        return remotePlayers.values();
+    }
+
+    /**
+     * Queues a message for the next batch. Does nothing when not connected.
+     *
+     * @param message The message
+     */
+    public void send(TpaMessage message) {
+        if (transport != null) {
+            outgoing.offer(message);
+        }
+    }
+
+    /**
+     * Queues a request lifecycle message about a request.
+     *
+     * @param kind    What happened to the request
+     * @param request The request
+     * @param name    Name to include (the sender's name for requests), or null
+     */
+    public void send(TpaMessage.Kind kind, TeleportRequest request, String name) {
+        send(new TpaMessage(kind, request.getType(), request.getSender(), request.getTarget(), name));
+    }
+
+    /**
+     * Tells the other side that a request involving a remote player expired here.
+     *
+     * @param request The expired request
+     */
+    public void onExpired(TeleportRequest request) {
+        if (transport != null && (remotePlayers.containsKey(request.getSender())
+                || remotePlayers.containsKey(request.getTarget()))) {
+            send(TpaMessage.Kind.EXPIRE, request, null);
+        }
+    }
+
+    /**
+     * Hands a player over to the node a remote player is on.
+     *
+     * @param player The player to move
+     * @param node   Id of the destination node
+     * @return true if the transfer was started
+     */
+    public boolean transfer(ServerPlayer player, String node) {
+        TpaTransport current = transport;
+        return current != null && current.transfer(player, node);
+    }
+
+    /**
+     * Expects a player from another node and teleports them to a local player
+     * once they log in, through the same warmup as a local accept.
+     *
+     * @param arrivingUuid    UUID of the player being transferred here
+     * @param destinationUuid UUID of the local player to teleport them to
+     * @param type            Type of the accepted request
+     */
+    public void expectArrival(UUID arrivingUuid, UUID destinationUuid, RequestType type) {
+        long deadline = TpaClock.now() + ARRIVAL_TIMEOUT_MS;
+        arrivals.put(arrivingUuid, new Arrival(destinationUuid, type, deadline));
+        nextArrivalDeadline = Math.min(nextArrivalDeadline, deadline);
+    }
+
+    /**
+     * Publishes the messages queued during this tick as one batch.
+     * Must be called from the server thread, once per tick.
+     */
+    public void flush() {
+        TpaTransport current = transport;
+        if (current == null || outgoing.isEmpty()) {
+            return;
+        }
+
+        TpaMessage message;
+        while ((message = outgoing.poll()) != null) {
+            batch.add(message);
+
+            if (batch.size() == 0xFFFF) {
+                current.publish(TpaCodec.encode(nodeId, batch));
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            current.publish(TpaCodec.encode(nodeId, batch));
+            batch.clear();
+        }
+    }
+
+    /**
+     * Applies the batches received since the last tick.
+     * Must be called from the server thread, once per tick.
+     */
+    public void processIncoming() {
+        ByteBuffer buffer;
+
+        while ((buffer = incoming.poll()) != null) {
+            TpaCodec.Batch received;
+            try {
+                received = TpaCodec.decode(buffer);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Dropping malformed SimpleTPA batch: {}", e.getMessage());
+                continue;
+            }
+
+            for (TpaMessage message : received.getMessages()) {
+                handle(received.getNode(), message);
+            }
+        }
+
+        if (TpaClock.now() > nextArrivalDeadline) {
+            expireArrivals(TpaClock.now());
+        }
+    }
+
+    /**
+     * Forgets the arrivals that did not log in before their deadline.
+     */
+    private void expireArrivals(long now) {
+        long next = Long.MAX_VALUE;
+
+        for (Iterator<Arrival> it = arrivals.values().iterator(); it.hasNext();) {
+            Arrival arrival = it.next();
+            if (now > arrival.deadline) {
+                it.remove();
+            } else {
+                next = Math.min(next, arrival.deadline);
+            }
+        }
+
+        nextArrivalDeadline = next;
+    }
+
+    private void handle(String node, TpaMessage message) {
+        switch (message.getKind()) {
+            case REQUEST -> onRequest(message);
+            case ACCEPT -> onAccept(message);
+            case DENY -> onClosed(message, AuditFormat.Event.DENY, messages -> messages.requestDenied, false);
+            case IGNORED -> onClosed(message, AuditFormat.Event.DENY, messages -> messages.targetIgnoring, false);
+            case CANCEL -> onCancel(message);
+            case EXPIRE -> onClosed(message, AuditFormat.Event.EXPIRE, messages -> messages.requestExpired, true);
+            case JOIN -> onJoin(node, message);
+            case LEAVE -> onLeave(node, message);
+            case SYNC -> onSync();
+        }
+    }
+
+    /**
+     * A player on another node sent a request to a local player.
+     */
+    private void onRequest(TpaMessage message) {
+        ServerPlayer target = PlayerSessions.getInstance().get(message.getTarget());
+        TpaManager manager = TpaManager.getInstance();
+
+        if (target == null) {
+            send(new TpaMessage(TpaMessage.Kind.DENY, message.getType(), message.getSender(), message.getTarget(),
+                    null));
+            return;
+        }
+
+        // The sender's own limit was taken on its node, only the target's is left.
+        // The sender's node still holds the request, so it is closed there too
+        if (!manager.tryAcquireRequest(null, message.getTarget())) {
+            send(new TpaMessage(TpaMessage.Kind.DENY, message.getType(), message.getSender(), message.getTarget(),
+                    null));
+            return;
+        }
+
+        if (manager.isIgnoring(target.getUUID())) {
+            send(new TpaMessage(TpaMessage.Kind.IGNORED, message.getType(), message.getSender(),
+                    message.getTarget(), null));
+            return;
+        }
+
+        manager.addRequest(new TeleportRequest(message.getSender(), message.getTarget(), message.getType()));
+
+        MessageTemplates messages = MessageTemplates.get(target);
+        target.sendSystemMessage((message.getType() == RequestType.TPA
+                ? messages.requestReceived
+                : messages.requestReceivedHere).render(message.getName())
+                .append(messages.requestActions(message.getName())));
+    }
+
+    /**
+     * The remote target accepted a request sent from this node.
+     */
+    private void onAccept(TpaMessage message) {
+        TpaManager manager = TpaManager.getInstance();
+        TeleportRequest request = manager.getRequest(message.getTarget(), message.getSender());
+        if (request == null || !manager.removeRequest(request)) {
+            return;
+        }
+
+        ServerPlayer sender = PlayerSessions.getInstance().get(request.getSender());
+        RemotePlayer target = remotePlayers.get(request.getTarget());
+        if (sender == null || target == null) {
+            return;
+        }
+
+        MessageUtils.send(sender, MessageTemplates.get(sender).requestAccepted, target.getName());
+
+        if (request.getType() == RequestType.TPA) {
+            // The sender goes to the target's node
+            if (!transfer(sender, target.getNode())) {
+                MessageUtils.send(sender, MessageTemplates.get(sender).transferFailed);
+            }
+        } else {
+            // The target comes here
+            expectArrival(request.getTarget(), request.getSender(), request.getType());
+        }
+    }
+
+    /**
+     * A request was denied, ignored or expired on the other side.
+     *
+     * @param event      What the audit log records for it
+     * @param notice     Picks the notice from the templates of each recipient
+     * @param notifyBoth Notify the local target too (expiries), not only the sender
+     */
+    private void onClosed(TpaMessage message, AuditFormat.Event event,
+            Function<MessageTemplates, MessageTemplate> notice, boolean notifyBoth) {
+        TpaManager manager = TpaManager.getInstance();
+        TeleportRequest request = manager.getRequest(message.getTarget(), message.getSender());
+        if (request == null || !manager.removeRequest(request)) {
+            return;
+        }
+        AuditLog.getInstance().request(event, request);
+
+        ServerPlayer sender = PlayerSessions.getInstance().get(request.getSender());
+        if (sender != null) {
+            MessageUtils.send(sender, notice.apply(MessageTemplates.get(sender)));
+        }
+
+        ServerPlayer target = PlayerSessions.getInstance().get(request.getTarget());
+        if (notifyBoth && target != null) {
+            MessageUtils.send(target, notice.apply(MessageTemplates.get(target)));
+        }
+    }
+
+    /**
+     * The remote sender withdrew a request to a local player.
+     */
+    private void onCancel(TpaMessage message) {
+        TpaManager manager = TpaManager.getInstance();
+        TeleportRequest request = manager.getRequest(message.getTarget(), message.getSender());
+        if (request == null || !manager.removeRequest(request)) {
+            return;
+        }
+        AuditLog.getInstance().request(AuditFormat.Event.CANCEL, request);
+
+        ServerPlayer target = PlayerSessions.getInstance().get(request.getTarget());
+        RemotePlayer sender = remotePlayers.get(request.getSender());
+        if (target != null) {
+            MessageUtils.send(target, MessageTemplates.get(target).requestCancelledTarget,
+                    sender != null ? sender.getName() : "");
+        }
+    }
+
+    private void onJoin(String node, TpaMessage message) {
+        // Players online here are never remote
+        if (PlayerSessions.getInstance().isOnline(message.getSender())) {
+            return;
+        }
+
+        NameTrie names = PlayerSessions.getInstance().getNames();
+        RemotePlayer player = new RemotePlayer(message.getSender(), message.getName(), node);
+        RemotePlayer previous = remotePlayers.put(player.getUuid(), player);
+        if (previous != null) {
+            names.remove(previous.getName(), previous.getUuid());
+        }
+        names.put(player.getName(), player.getUuid());
+    }
+
+    private void onLeave(String node, TpaMessage message) {
+        RemotePlayer player = remotePlayers.get(message.getSender());
+
+        // A leave can arrive after the player already joined another node
+        if (player != null && player.getNode().equals(node) && remotePlayers.remove(player.getUuid(), player)) {
+            PlayerSessions.getInstance().getNames().remove(player.getName(), player.getUuid());
+            TpaManager.getInstance().removeLimits(player.getUuid());
+        }
+    }
+
+    private void onSync() {
+        PlayerSessions sessions = PlayerSessions.getInstance();
+        for (ServerPlayer player : sessions.getPlayers()) {
+            send(new TpaMessage(TpaMessage.Kind.JOIN, null, player.getUUID(), null, player.getName().getString()));
+        }
+    }
+
+    /**
+     * Announces a player that logs in and places them if they arrive from
+     * another node after an accepted request.
+     */
+    @SubscribeEvent
+    public void onLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (transport == null || !(event.getEntity() instanceof ServerPlayer player)) {
+            return;
+        }
+
+        // The name index already points at the local session, PlayerSessions runs first
+        remotePlayers.remove(player.getUUID());
+        send(new TpaMessage(TpaMessage.Kind.JOIN, null, player.getUUID(), null, player.getName().getString()));
+
+        Arrival arrival = arrivals.remove(player.getUUID());
+        ServerPlayer destination = arrival != null ? PlayerSessions.getInstance().get(arrival.destinationUuid) : null;
+        if (destination != null) {
+            // Warmup, cancellation, safe landing and /back history as for a local accept
+            WarmupManager.getInstance().startTeleport(player, arrival.destinationUuid, arrival.type,
+                    destination.serverLevel(), destination.position(), destination.getYRot(),
+                    destination.getXRot());
+        }
+    }
+
+    /**
+     * Tells the other nodes about a player that logs out, and closes the
+     * requests they had with remote players before TpaManager drops them.
+     */
+    @SubscribeEvent(priority = EventPriority.HIGH)
+    public void onLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (transport == null) {
+            return;
+        }
+
+        UUID playerUuid = event.getEntity().getUUID();
+        TpaManager manager = TpaManager.getInstance();
+
+        for (TeleportRequest request : manager.getOutgoingRequests(playerUuid)) {
+            if (remotePlayers.containsKey(request.getTarget())) {
+                send(TpaMessage.Kind.CANCEL, request, null);
+            }
+        }
+        for (TeleportRequest request : manager.getIncomingRequests(playerUuid)) {
+            if (remotePlayers.containsKey(request.getSender())) {
+                send(TpaMessage.Kind.DENY, request, null);
+            }
+        }
+
+        send(new TpaMessage(TpaMessage.Kind.LEAVE, null, playerUuid, null, null));
+    }
+
+    /**
+     * A player expected from another node.
+     */
+    private static final class Arrival {
+        private final UUID destinationUuid;
+        private final RequestType type;
+        private final long deadline;
+
+        Arrival(UUID destinationUuid, RequestType type, long deadline) {
+            this.destinationUuid = destinationUuid;
+            this.type = type;
+            this.deadline = deadline;
+        }
+    }
+}
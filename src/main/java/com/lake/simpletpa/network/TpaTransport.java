@@ -0,0 +1,47 @@
+package com.lake.simpletpa.network;
+
+import net.minecraft.server.level.ServerPlayer;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Message bus connecting the nodes of a proxy network.
+ * Implementations carry encoded batches between nodes (a broker, a proxy
+ * plugin channel, or the in-process LoopbackTransport) and may hand players
+ * over to another node through the proxy.
+ * Plugged in with TpaNetwork.connect().
+ */
+public interface TpaTransport {
+    /**
+     * Sends a batch to every other node. Must not block; may be called
+     * again before earlier batches are delivered.
+     *
+     * @param batch Encoded batch, owned by the transport from now on
+     */
+    void publish(ByteBuffer batch);
+
+    /**
+     * Sets the callback receiving batches from other nodes.
+     * It may be called from any thread.
+     *
+     * @param receiver The callback
+     */
+    void setReceiver(Consumer<ByteBuffer> receiver);
+
+    /**
+     * Moves a player to another node through the proxy.
+     *
+     * @param player The player to move
+     * @param node   Id of the destination node
+     * @return true if the transfer was started
+     */
+    default boolean transfer(ServerPlayer player, String node) {
+        return false;
+    }
+
+    /**
+     * Disconnects from the bus.
+     */
+    void close();
+}
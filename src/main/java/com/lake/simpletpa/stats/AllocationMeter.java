@@ -0,0 +1,43 @@
+package com.lake.simpletpa.stats;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads how many bytes the current thread has allocated so far, through the
+ * HotSpot ThreadMXBean extension.
+ * Reading is a native call and does not allocate itself. On JVMs without the
+ * extension, or with allocation tracking turned off, it always reads 0.
+ */
+public final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean BEAN = bean();
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Checks whether allocations can be measured on this JVM.
+     */
+    public static boolean isSupported() {
+        return BEAN != null;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread since it started.
+     * Only differences between two reads on the same thread are meaningful.
+     */
+    public static long currentThreadAllocatedBytes() {
+        return BEAN != null ? BEAN.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean bean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+                || !bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return bean;
+    }
+}
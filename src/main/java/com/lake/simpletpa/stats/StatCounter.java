@@ -0,0 +1,74 @@
+package com.lake.simpletpa.stats;
+
+import com.lake.simpletpa.util.TpaClock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event counter with a lifetime total and a rolling one-minute window.
+ * The window is a ring of one-second slots, so recording never allocates.
+ */
+public class StatCounter {
+    // One slot per second of the rolling window
+    private static final int WINDOW_SECONDS = 60;
+
+    private final LongAdder total;
+    private final AtomicLongArray slotCounts;
+    private final AtomicLongArray slotSeconds;
+
+    public StatCounter() {
+        this.total = new LongAdder();
+        this.slotCounts = new AtomicLongArray(WINDOW_SECONDS);
+        this.slotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+    }
+
+    /**
+     * Records one event.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Records several events at once.
+     *
+     * @param count Number of events
+     */
+    public void add(long count) {
+        total.add(count);
+
+        long second = TpaClock.now() / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+
+        // First event of a new second reuses the slot from a minute ago
+        long slotSecond = slotSeconds.get(slot);
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+            slotCounts.set(slot, 0);
+        }
+        slotCounts.addAndGet(slot, count);
+    }
+
+    /**
+     * Gets the number of events since the server started.
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Gets the number of events in the last minute.
+     */
+    public long getLastMinute() {
+        long now = TpaClock.now() / 1000;
+        long sum = 0;
+
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            if (now - slotSeconds.get(slot) < WINDOW_SECONDS) {
+                sum += slotCounts.get(slot);
+            }
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,85 @@
+package com.lake.simpletpa.stats;
+
+/**
+ * Singleton holding the live counters and latency histograms shown by /tpa stats.
+ * Recording is allocation-free so it can stay enabled in production.
+ */
+public class TpaStats {
+    private static final TpaStats INSTANCE = new TpaStats();
+
+    // Rough retained bytes per entry (map node + UUID key + value), used for /tpa stats
+    public static final int BYTES_PER_REQUEST = 104;
+    // Cooldowns are kept in flat arrays: two UUID halves plus a deadline per slot
+    public static final int BYTES_PER_COOLDOWN_SLOT = 24;
+    public static final int BYTES_PER_IGNORING = 64;
+    public static final int BYTES_PER_WARMUP = 232;
+    // /back history slots: dimension id, three coordinates and two angles
+    public static final int BYTES_PER_BACK_SLOT = 36;
+
+    public final StatCounter requestsSent = new StatCounter();
+    // Attempts rejected by the per-sender or per-target rate limits
+    public final StatCounter requestsDropped = new StatCounter();
+    // Audit records lost because the writer fell behind
+    public final StatCounter auditDropped = new StatCounter();
+    public final StatCounter requestsAccepted = new StatCounter();
+    public final StatCounter requestsDenied = new StatCounter();
+    public final StatCounter requestsExpired = new StatCounter();
+    public final StatCounter warmupsCancelled = new StatCounter();
+    public final StatCounter teleports = new StatCounter();
+
+    // Time from /tpa to /tpaccept
+    public final LatencyHistogram requestToAccept = new LatencyHistogram();
+    // Time from warmup start to the teleport actually running
+    public final LatencyHistogram warmupToTeleport = new LatencyHistogram();
+    // Time spent inside the mod's tick work and in teleportTo
+    public final LatencyHistogram teleportTime = new LatencyHistogram();
+    public final LatencyHistogram cleanExpiredTime = new LatencyHistogram();
+    public final LatencyHistogram checkWarmupsTime = new LatencyHistogram();
+    // Bytes allocated by the mod's end-of-tick work (same buckets, values in bytes)
+    public final LatencyHistogram tickAllocatedBytes = new LatencyHistogram();
+
+    private TpaStats() {
+    }
+
+    /**
+     * Gets the singleton instance of TpaStats.
+     */
+    public static TpaStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Formats a nanosecond duration with a readable unit.
+     *
+     * @param nanos Duration in nanoseconds
+     * @return The formatted duration (ns, µs, ms or s)
+     */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000L) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format("%.1fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * Formats a byte count with a readable unit.
+     *
+     * @param bytes Number of bytes
+     * @return The formatted size (B, KB or MB)
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+        if (bytes < 1024L * 1024L) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
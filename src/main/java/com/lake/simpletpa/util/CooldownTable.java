@@ -0,0 +1,256 @@
+package com.lake.simpletpa.util;
+
+import java.util.UUID;
+
+/**
+ * Open-addressing table of cooldown deadlines keyed by player UUID.
+ * Keys are stored as the two long halves of the UUID and deadlines as
+ * primitive longs, so setting and checking a cooldown allocates nothing
+ * (apart from the occasional resize).
+ * Expired entries are reclaimed lazily: when they are looked up, or in bulk
+ * when the table runs out of room, before it grows.
+ * Times are in milliseconds of whatever clock the caller uses.
+ * Not thread-safe: the table is confined to the server thread, which runs
+ * every command, login/logout event and stats query that touches it.
+ */
+public class CooldownTable {
+    private static final int MIN_CAPACITY = 16;
+    // A deadline of 0 marks a free slot, stored deadlines are always positive
+    private static final long FREE = 0L;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private long[] deadlines;
+    private int mask;
+    // Slots in use, including expired entries not yet reclaimed
+    private int size;
+
+    public CooldownTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Starts (or restarts) a cooldown.
+     *
+     * @param playerUuid UUID of the player
+     * @param now        Current time
+     * @param durationMs Cooldown length; 0 or less clears the cooldown
+     */
+    public void start(UUID playerUuid, long now, long durationMs) {
+        long msb = playerUuid.getMostSignificantBits();
+        long lsb = playerUuid.getLeastSignificantBits();
+
+        if (durationMs <= 0) {
+            int slot = find(msb, lsb);
+            if (slot >= 0) {
+                removeAt(slot);
+            }
+            return;
+        }
+
+        long deadline = Math.max(1L, now + durationMs);
+        int slot = index(msb, lsb);
+
+        while (deadlines[slot] != FREE) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                deadlines[slot] = deadline;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Keep the load factor at or below 3/4
+        if ((size + 1) * 4 > deadlines.length * 3) {
+            resize(now);
+            slot = index(msb, lsb);
+            while (deadlines[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        deadlines[slot] = deadline;
+        size++;
+    }
+
+    /**
+     * Checks whether a player's cooldown is still running.
+     *
+     * @param playerUuid UUID of the player
+     * @param now        Current time
+     * @return true if the cooldown has not run out yet
+     */
+    public boolean isActive(UUID playerUuid, long now) {
+        return getRemaining(playerUuid, now) > 0;
+    }
+
+    /**
+     * Gets the time left on a player's cooldown.
+     * An expired cooldown is removed on the way.
+     *
+     * @param playerUuid UUID of the player
+     * @param now        Current time
+     * @return Remaining milliseconds, or 0 if there is no running cooldown
+     */
+    public long getRemaining(UUID playerUuid, long now) {
+        int slot = find(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return 0;
+        }
+
+        long remaining = deadlines[slot] - now;
+        if (remaining <= 0) {
+            removeAt(slot);
+            return 0;
+        }
+        return remaining;
+    }
+
+    /**
+     * Removes a player's cooldown.
+     *
+     * @param playerUuid UUID of the player
+     * @return true if the player had a cooldown entry
+     */
+    public boolean remove(UUID playerUuid) {
+        int slot = find(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Removes every expired entry.
+     *
+     * @param now Current time
+     */
+    public void purge(long now) {
+        rehash(deadlines.length, now);
+    }
+
+    /**
+     * Removes every entry and shrinks the table back to its initial size.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Gets the number of stored entries, including expired ones not yet reclaimed.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     */
+    public int capacity() {
+        return deadlines.length;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @return The slot, or -1 if the key is not stored
+     */
+    private int find(long msb, long lsb) {
+        int slot = index(msb, lsb);
+
+        while (deadlines[slot] != FREE) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Frees a slot, shifting later entries of the probe run back so lookups
+     * never need tombstones.
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        int next = (slot + 1) & mask;
+
+        while (deadlines[next] != FREE) {
+            int home = index(mostSigBits[next], leastSigBits[next]);
+
+            // The entry can fill the hole if the hole lies between its home slot and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mostSigBits[hole] = mostSigBits[next];
+                leastSigBits[hole] = leastSigBits[next];
+                deadlines[hole] = deadlines[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        deadlines[hole] = FREE;
+        size--;
+    }
+
+    /**
+     * Makes room for one more entry: drops expired entries and only doubles
+     * the table if it would still be more than half full.
+     */
+    private void resize(long now) {
+        int live = 0;
+        for (long deadline : deadlines) {
+            if (deadline > now) {
+                live++;
+            }
+        }
+
+        int capacity = deadlines.length;
+        if ((live + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        rehash(capacity, now);
+    }
+
+    private void rehash(int capacity, long now) {
+        long[] oldMsb = mostSigBits;
+        long[] oldLsb = leastSigBits;
+        long[] oldDeadlines = deadlines;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldDeadlines.length; i++) {
+            if (oldDeadlines[i] > now) {
+                int slot = index(oldMsb[i], oldLsb[i]);
+                while (deadlines[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                mostSigBits[slot] = oldMsb[i];
+                leastSigBits[slot] = oldLsb[i];
+                deadlines[slot] = oldDeadlines[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        deadlines = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Home slot of a key. Mixes both halves, since version and variant bits
+     * make parts of a UUID constant.
+     */
+    private int index(long msb, long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,75 @@
+package com.lake.simpletpa.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the language files shipped in the mod jar under
+ * assets/simpletpa/lang, in the same flat key/value JSON format as vanilla
+ * language files.
+ * The mod is server-side only, so clients never see these files; the server
+ * picks the text itself from each player's client language.
+ */
+public final class LangBundle {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String PATH = "/assets/simpletpa/lang/";
+
+    private LangBundle() {
+    }
+
+    /**
+     * Loads the texts of a locale.
+     *
+     * @param locale Locale code as sent by the client, e.g. "en_us"
+     * @return Key -> raw text, or null if there is no file for the locale
+     */
+    public static Map<String, String> load(String locale) {
+        if (!isValidLocale(locale)) {
+            return null;
+        }
+
+        InputStream stream = LangBundle.class.getResourceAsStream(PATH + locale + ".json");
+        if (stream == null) {
+            return null;
+        }
+
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+            Map<String, String> texts = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+                texts.put(entry.getKey(), entry.getValue().getAsString());
+            }
+            return texts;
+        } catch (Exception e) {
+            LOGGER.warn("Could not read language file {}", locale, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks that a locale code looks like one, so client input never ends
+     * up in a resource path as is.
+     */
+    public static boolean isValidLocale(String locale) {
+        if (locale == null || locale.length() < 2 || locale.length() > 16) {
+            return false;
+        }
+        for (int i = 0; i < locale.length(); i++) {
+            char c = locale.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.lake.simpletpa.util;
+
+import com.lake.simpletpa.TpaConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message templates for every client language, compiled once per language.
+ * Texts are layered: the server's default language file, then the configured
+ * messages for the default language, then the player's own language file for
+ * everyone else, and last the messages the operator changed from their
+ * default, which win in every language.
+ * Languages are compiled the first time a player using them gets a message
+ * and cached for the life of the settings snapshot, so sending a message is
+ * one map lookup however many languages are in use.
+ */
+public class LocalizedMessages {
+    // Bound on cached languages, clients can report any language code
+    private static final int MAX_LOCALES = 64;
+
+    private final String defaultLocale;
+    private final long expirationSeconds;
+    private final Map<String, String> baseTexts;
+    // Configured messages that differ from their default, read once so every
+    // language compiled from this snapshot sees the same config
+    private final Map<String, String> overrides;
+    private final MessageTemplates defaults;
+    private final Map<String, MessageTemplates> byLocale;
+
+    /**
+     * Compiles the default language right away.
+     *
+     * @param defaultLocale     Language of the configured messages
+     * @param config            Configured messages
+     * @param expirationSeconds Request expiry shown below the request buttons
+     */
+    public LocalizedMessages(String defaultLocale, TpaConfig.Messages config, long expirationSeconds) {
+        this.defaultLocale = defaultLocale;
+        this.expirationSeconds = expirationSeconds;
+        this.baseTexts = new HashMap<>();
+        this.overrides = new HashMap<>();
+        this.byLocale = new ConcurrentHashMap<>();
+
+        // Built-in English covers keys missing from the default language file
+        putAll(baseTexts, LangBundle.load("en_us"));
+        putAll(baseTexts, LangBundle.load(defaultLocale));
+        MessageTemplates.putConfigured(baseTexts, config, false);
+        MessageTemplates.putConfigured(overrides, config, true);
+
+        this.defaults = new MessageTemplates(baseTexts, expirationSeconds);
+        this.byLocale.put(defaultLocale, defaults);
+    }
+
+    /**
+     * Gets the templates of the default language.
+     */
+    public MessageTemplates getDefault() {
+        return defaults;
+    }
+
+    /**
+     * Gets the templates of a client language, compiling them on first use.
+     * Falls back to the main variant of the language (es_mx -> es_es) and then
+     * to the default language.
+     *
+     * @param locale Client language code, e.g. "en_us"
+     */
+    public MessageTemplates get(String locale) {
+        MessageTemplates templates = byLocale.get(locale);
+        if (templates != null) {
+            return templates;
+        }
+        if (!LangBundle.isValidLocale(locale) || byLocale.size() >= MAX_LOCALES) {
+            return defaults;
+        }
+        return byLocale.computeIfAbsent(locale, this::compile);
+    }
+
+    private MessageTemplates compile(String locale) {
+        Map<String, String> bundle = LangBundle.load(locale);
+        if (bundle == null) {
+            String fallback = mainVariant(locale);
+            if (fallback.equals(locale) || fallback.equals(defaultLocale)) {
+                return defaults;
+            }
+            bundle = LangBundle.load(fallback);
+        }
+        if (bundle == null) {
+            return defaults;
+        }
+
+        Map<String, String> texts = new HashMap<>(baseTexts);
+        texts.putAll(bundle);
+        texts.putAll(overrides);
+        return new MessageTemplates(texts, expirationSeconds);
+    }
+
+    /**
+     * Main variant of a language: es_mx -> es_es, en_gb -> en_us.
+     */
+    private static String mainVariant(String locale) {
+        int separator = locale.indexOf('_');
+        String language = separator > 0 ? locale.substring(0, separator) : locale;
+        return language + "_" + ("en".equals(language) ? "us" : language);
+    }
+
+    private static void putAll(Map<String, String> texts, Map<String, String> bundle) {
+        if (bundle != null) {
+            texts.putAll(bundle);
+        }
+    }
+}
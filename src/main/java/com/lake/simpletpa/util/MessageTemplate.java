@@ -0,0 +1,113 @@
+package com.lake.simpletpa.util;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.chat.Style;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message parsed once into styled segments and placeholder slots.
+ * Color codes (& or §) become component styles and %s / %d become slots,
+ * so rendering only fills in the slots without any regex or format parsing.
+ */
+public class MessageTemplate {
+    private final Component[] literals;
+    private final Style[] slotStyles;
+    private final int[] slotIndexes;
+
+    private MessageTemplate(Component[] literals, Style[] slotStyles, int[] slotIndexes) {
+        this.literals = literals;
+        this.slotStyles = slotStyles;
+        this.slotIndexes = slotIndexes;
+    }
+
+    /**
+     * Parses a raw message into a template.
+     *
+     * @param message The message string (can contain & color codes and %s / %d placeholders)
+     * @return The compiled template
+     */
+    public static MessageTemplate compile(String message) {
+        List<Component> literals = new ArrayList<>();
+        List<Style> slotStyles = new ArrayList<>();
+        List<Integer> slotIndexes = new ArrayList<>();
+
+        String raw = message == null ? "" : message;
+        StringBuilder text = new StringBuilder();
+        Style style = Style.EMPTY;
+        int nextSlot = 0;
+
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            char next = i + 1 < raw.length() ? raw.charAt(i + 1) : 0;
+
+            if ((c == '&' || c == '§') && ChatFormatting.getByCode(next) != null) {
+                // Color code: close the current segment and switch style
+                flush(text, style, literals, slotStyles, slotIndexes);
+                style = style.applyLegacyFormat(ChatFormatting.getByCode(next));
+                i++;
+            } else if (c == '%' && next == '%') {
+                text.append('%');
+                i++;
+            } else if (c == '%' && (next == 's' || next == 'd')) {
+                // Placeholder: close the current segment and add a slot
+                flush(text, style, literals, slotStyles, slotIndexes);
+                literals.add(null);
+                slotStyles.add(style);
+                slotIndexes.add(nextSlot++);
+                i++;
+            } else {
+                text.append(c);
+            }
+        }
+
+        flush(text, style, literals, slotStyles, slotIndexes);
+
+        int[] indexes = new int[slotIndexes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = slotIndexes.get(i);
+        }
+
+        return new MessageTemplate(literals.toArray(new Component[0]), slotStyles.toArray(new Style[0]), indexes);
+    }
+
+    private static void flush(StringBuilder text, Style style, List<Component> literals,
+            List<Style> slotStyles, List<Integer> slotIndexes) {
+        if (text.length() == 0) {
+            return;
+        }
+        literals.add(Component.literal(text.toString()).setStyle(style));
+        slotStyles.add(null);
+        slotIndexes.add(-1);
+        text.setLength(0);
+    }
+
+    /**
+     * Renders the template, filling placeholder slots in order.
+     * Missing arguments are rendered as an empty string.
+     *
+     * @param args Arguments for the placeholder slots
+     * @return The rendered component
+     */
+    public MutableComponent render(Object... args) {
+        MutableComponent result = Component.empty();
+
+        for (int i = 0; i < literals.length; i++) {
+            Component literal = literals[i];
+
+            if (literal != null) {
+                // Literal segments are immutable and shared between renders
+                result.append(literal);
+            } else {
+                int slot = slotIndexes[i];
+                String value = slot < args.length ? String.valueOf(args[slot]) : "";
+                result.append(Component.literal(value).setStyle(slotStyles[i]));
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,267 @@
+package com.lake.simpletpa.util;
+
+import com.lake.simpletpa.TpaConfig;
+import com.lake.simpletpa.TpaSettings;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.HoverEvent;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.chat.Style;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.common.ForgeConfigSpec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled templates for every message in one language.
+ * Built by LocalizedMessages as part of each TpaSettings snapshot, so a
+ * message never mixes values from two reloads.
+ * Also holds the immutable parts of the request buttons shared by every request.
+ */
+public class MessageTemplates {
+    private static final String MESSAGE_PREFIX = "simpletpa.message.";
+    private static final String STATS_PREFIX = "simpletpa.stats.";
+
+    public final MessageTemplate requestSent;
+    public final MessageTemplate requestReceived;
+    public final MessageTemplate requestReceivedHere;
+    public final MessageTemplate teleporting;
+    public final MessageTemplate warmupStart;
+    public final MessageTemplate warmupCancelled;
+    public final MessageTemplate warmupCancelledDamage;
+    public final MessageTemplate requestExpired;
+    public final MessageTemplate requestDenied;
+    public final MessageTemplate requestCancelled;
+    public final MessageTemplate requestCancelledTarget;
+    public final MessageTemplate noRequest;
+    public final MessageTemplate playerOffline;
+    public final MessageTemplate cannotTeleportSelf;
+    public final MessageTemplate onCooldown;
+    public final MessageTemplate requestAccepted;
+    public final MessageTemplate toggleEnabled;
+    public final MessageTemplate toggleDisabled;
+    public final MessageTemplate targetIgnoring;
+    public final MessageTemplate transferFailed;
+    public final MessageTemplate groupRequestSent;
+    public final MessageTemplate noGroupTargets;
+    public final MessageTemplate noBackLocation;
+    // Has no placeholders and is sent to flooding players, so it is rendered once
+    public final Component requestFlooded;
+
+    // Lines of /tpa stats; they come from the language files only, not from the config
+    public final MessageTemplate statsHeader;
+    public final MessageTemplate statsCounter;
+    public final MessageTemplate statsLatencyHeader;
+    public final MessageTemplate statsLatency;
+    public final MessageTemplate statsAllocationHeader;
+    public final MessageTemplate statsAllocation;
+    public final MessageTemplate statsMemoryHeader;
+    public final MessageTemplate statsMemory;
+    private final Map<String, String> statsLabels;
+
+    // Button labels and hover texts, only the click command differs per request
+    private final Component acceptLabel;
+    private final Component denyLabel;
+    private final Style acceptStyle;
+    private final Style denyStyle;
+    // Line shown below the buttons of every incoming request
+    private final Component expiryLine;
+    // Patterns used by formatTime
+    private final String second;
+    private final String seconds;
+    private final String minute;
+    private final String minutes;
+    private final String timeJoin;
+
+    /**
+     * Compiles the templates from the texts of a language.
+     *
+     * @param texts             Key -> raw text, as in the language files
+     * @param expirationSeconds Request expiry shown below the request buttons
+     */
+    MessageTemplates(Map<String, String> texts, long expirationSeconds) {
+        this.requestSent = message(texts, "requestSent");
+        this.requestReceived = message(texts, "requestReceived");
+        this.requestReceivedHere = message(texts, "requestReceivedHere");
+        this.teleporting = message(texts, "teleporting");
+        this.warmupStart = message(texts, "warmupStart");
+        this.warmupCancelled = message(texts, "warmupCancelled");
+        this.warmupCancelledDamage = message(texts, "warmupCancelledDamage");
+        this.requestExpired = message(texts, "requestExpired");
+        this.requestDenied = message(texts, "requestDenied");
+        this.requestCancelled = message(texts, "requestCancelled");
+        this.requestCancelledTarget = message(texts, "requestCancelledTarget");
+        this.noRequest = message(texts, "noRequest");
+        this.playerOffline = message(texts, "playerOffline");
+        this.cannotTeleportSelf = message(texts, "cannotTeleportSelf");
+        this.onCooldown = message(texts, "onCooldown");
+        this.requestAccepted = message(texts, "requestAccepted");
+        this.toggleEnabled = message(texts, "toggleEnabled");
+        this.toggleDisabled = message(texts, "toggleDisabled");
+        this.targetIgnoring = message(texts, "targetIgnoring");
+        this.transferFailed = message(texts, "transferFailed");
+        this.groupRequestSent = message(texts, "groupRequestSent");
+        this.noGroupTargets = message(texts, "noGroupTargets");
+        this.noBackLocation = message(texts, "noBackLocation");
+        this.requestFlooded = message(texts, "requestFlooded").render();
+
+        this.statsHeader = MessageTemplate.compile(text(texts, STATS_PREFIX + "header"));
+        this.statsCounter = MessageTemplate.compile(text(texts, STATS_PREFIX + "counter"));
+        this.statsLatencyHeader = MessageTemplate.compile(text(texts, STATS_PREFIX + "latencyHeader"));
+        this.statsLatency = MessageTemplate.compile(text(texts, STATS_PREFIX + "latency"));
+        this.statsAllocationHeader = MessageTemplate.compile(text(texts, STATS_PREFIX + "allocationHeader"));
+        this.statsAllocation = MessageTemplate.compile(text(texts, STATS_PREFIX + "allocation"));
+        this.statsMemoryHeader = MessageTemplate.compile(text(texts, STATS_PREFIX + "memoryHeader"));
+        this.statsMemory = MessageTemplate.compile(text(texts, STATS_PREFIX + "memory"));
+        this.statsLabels = new HashMap<>();
+        for (Map.Entry<String, String> entry : texts.entrySet()) {
+            if (entry.getKey().startsWith(STATS_PREFIX + "label.")) {
+                statsLabels.put(entry.getKey().substring(STATS_PREFIX.length() + "label.".length()),
+                        entry.getValue());
+            }
+        }
+
+        this.acceptLabel = Component.literal(MessageUtils.formatColors(text(texts, "simpletpa.button.accept")));
+        this.denyLabel = Component.literal(MessageUtils.formatColors(text(texts, "simpletpa.button.deny")));
+        this.acceptStyle = Style.EMPTY.withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
+                Component.literal(text(texts, "simpletpa.button.accept.hover"))));
+        this.denyStyle = Style.EMPTY.withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
+                Component.literal(text(texts, "simpletpa.button.deny.hover"))));
+        this.expiryLine = Component.literal("\n").append(
+                MessageTemplate.compile(text(texts, "simpletpa.request.expiry")).render(expirationSeconds));
+
+        this.second = text(texts, "simpletpa.time.second");
+        this.seconds = text(texts, "simpletpa.time.seconds");
+        this.minute = text(texts, "simpletpa.time.minute");
+        this.minutes = text(texts, "simpletpa.time.minutes");
+        this.timeJoin = text(texts, "simpletpa.time.join");
+    }
+
+    /**
+     * Adds the messages set in the config file to a set of texts, under the
+     * same keys the language files use.
+     *
+     * @param overridesOnly Only add the messages the operator changed from
+     *                      their default
+     */
+    static void putConfigured(Map<String, String> texts, TpaConfig.Messages config, boolean overridesOnly) {
+        putConfigured(texts, "requestSent", config.requestSent, overridesOnly);
+        putConfigured(texts, "requestReceived", config.requestReceived, overridesOnly);
+        putConfigured(texts, "requestReceivedHere", config.requestReceivedHere, overridesOnly);
+        putConfigured(texts, "teleporting", config.teleporting, overridesOnly);
+        putConfigured(texts, "warmupStart", config.warmupStart, overridesOnly);
+        putConfigured(texts, "warmupCancelled", config.warmupCancelled, overridesOnly);
+        putConfigured(texts, "warmupCancelledDamage", config.warmupCancelledDamage, overridesOnly);
+        putConfigured(texts, "requestExpired", config.requestExpired, overridesOnly);
+        putConfigured(texts, "requestDenied", config.requestDenied, overridesOnly);
+        putConfigured(texts, "requestCancelled", config.requestCancelled, overridesOnly);
+        putConfigured(texts, "requestCancelledTarget", config.requestCancelledTarget, overridesOnly);
+        putConfigured(texts, "noRequest", config.noRequest, overridesOnly);
+        putConfigured(texts, "playerOffline", config.playerOffline, overridesOnly);
+        putConfigured(texts, "cannotTeleportSelf", config.cannotTeleportSelf, overridesOnly);
+        putConfigured(texts, "onCooldown", config.onCooldown, overridesOnly);
+        putConfigured(texts, "requestAccepted", config.requestAccepted, overridesOnly);
+        putConfigured(texts, "toggleEnabled", config.toggleEnabled, overridesOnly);
+        putConfigured(texts, "toggleDisabled", config.toggleDisabled, overridesOnly);
+        putConfigured(texts, "targetIgnoring", config.targetIgnoring, overridesOnly);
+        putConfigured(texts, "transferFailed", config.transferFailed, overridesOnly);
+        putConfigured(texts, "groupRequestSent", config.groupRequestSent, overridesOnly);
+        putConfigured(texts, "noGroupTargets", config.noGroupTargets, overridesOnly);
+        putConfigured(texts, "noBackLocation", config.noBackLocation, overridesOnly);
+        putConfigured(texts, "requestFlooded", config.requestFlooded, overridesOnly);
+    }
+
+    private static void putConfigured(Map<String, String> texts, String name,
+                                      ForgeConfigSpec.ConfigValue<String> value, boolean overridesOnly) {
+        String text = value.get();
+        if (!overridesOnly || !text.equals(value.getDefault())) {
+            texts.put(MESSAGE_PREFIX + name, text);
+        }
+    }
+
+    /**
+     * Builds the clickable accept/deny buttons followed by the expiry line.
+     * The buttons name the sender, so they act on that request even when
+     * several are pending.
+     *
+     * @param senderName Name of the player who sent the request
+     */
+    public MutableComponent requestActions(String senderName) {
+        return Component.literal(" ")
+                .append(acceptLabel.copy().setStyle(acceptStyle.withClickEvent(
+                        new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpaccept " + senderName))))
+                .append(" ")
+                .append(denyLabel.copy().setStyle(denyStyle.withClickEvent(
+                        new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpdeny " + senderName))))
+                .append(expiryLine);
+    }
+
+    /**
+     * Gets the /tpa stats label of a counter or latency.
+     *
+     * @param name Name of the stat, e.g. "requestsSent"
+     * @return The label, or the name itself if no language file has one
+     */
+    public String statsLabel(String name) {
+        return statsLabels.getOrDefault(name, name);
+    }
+
+    /**
+     * Formats time in seconds to a readable string in this language.
+     *
+     * @param totalSeconds Number of seconds
+     * @return Formatted time string
+     */
+    public String formatTime(long totalSeconds) {
+        if (totalSeconds < 60) {
+            return MessageUtils.format(totalSeconds != 1 ? seconds : second, totalSeconds);
+        }
+
+        long wholeMinutes = totalSeconds / 60;
+        long remainingSeconds = totalSeconds % 60;
+        String minutesText = MessageUtils.format(wholeMinutes != 1 ? minutes : minute, wholeMinutes);
+
+        if (remainingSeconds == 0) {
+            return minutesText;
+        }
+
+        return MessageUtils.format(timeJoin, minutesText,
+                MessageUtils.format(remainingSeconds != 1 ? seconds : second, remainingSeconds));
+    }
+
+    /**
+     * Gets the templates of the server's default language.
+     */
+    public static MessageTemplates get() {
+        return TpaSettings.get().messages.getDefault();
+    }
+
+    /**
+     * Gets the templates in a player's client language.
+     *
+     * @param player The player the message is for
+     */
+    public static MessageTemplates get(ServerPlayer player) {
+        return get(TpaSettings.get(), player);
+    }
+
+    /**
+     * Gets the templates in a player's client language from a given snapshot.
+     *
+     * @param settings Settings snapshot the caller is working with
+     * @param player   The player the message is for
+     */
+    public static MessageTemplates get(TpaSettings settings, ServerPlayer player) {
+        return settings.messages.get(player.getLanguage());
+    }
+
+    private static MessageTemplate message(Map<String, String> texts, String name) {
+        return MessageTemplate.compile(text(texts, MESSAGE_PREFIX + name));
+    }
+
+    private static String text(Map<String, String> texts, String key) {
+        String text = texts.get(key);
+        return text != null ? text : key;
+    }
+}
@@ -3,14 +3,31 @@ package com.lake.simpletpa.util;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 
+import java.util.regex.Pattern;
+
 /**
  * Utility class for handling formatted messages with color codes.
  */
 public class MessageUtils {
+    // Supports: 0-9, a-f, k-o, r (all Minecraft color codes)
+    private static final Pattern COLOR_CODE = Pattern.compile("&([0-9a-fk-or])");
+
+    /**
+     * Sends a precompiled message to a player.
+     * 
+     * @param player   The player to send the message to
+     * @param template The compiled message template
+     * @param args     Optional arguments for the placeholder slots
+     */
+    public static void send(ServerPlayer player, MessageTemplate template, Object... args) {
+        player.sendSystemMessage(template.render(args));
+    }
 
     /**
      * Sends a formatted message to a player.
      * Converts & color codes to § and supports placeholders.
+     * Parses the message on every call, configured messages should use
+     * {@link MessageTemplates} instead.
      * 
      * @param player  The player to send the message to
      * @param message The message string (can contain & color codes)
@@ -54,29 +71,17 @@ public class MessageUtils {
         }
 
         // Replace & with § for color codes
-        // Supports: 0-9, a-f, k-o, r (all Minecraft color codes)
-        return message.replaceAll("&([0-9a-fk-or])", "§$1");
+        return COLOR_CODE.matcher(message).replaceAll("§$1");
     }
 
     /**
-     * Formats time in seconds to a readable string.
+     * Formats time in seconds to a readable string in the server's default language.
+     * Use {@link MessageTemplates#formatTime} for text shown to a specific player.
      * 
      * @param seconds Number of seconds
      * @return Formatted time string
      */
     public static String formatTime(long seconds) {
-        if (seconds < 60) {
-            return seconds + " segundo" + (seconds != 1 ? "s" : "");
-        }
-
-        long minutes = seconds / 60;
-        long remainingSeconds = seconds % 60;
-
-        if (remainingSeconds == 0) {
-            return minutes + " minuto" + (minutes != 1 ? "s" : "");
-        }
-
-        return minutes + " minuto" + (minutes != 1 ? "s" : "") +
-                " y " + remainingSeconds + " segundo" + (remainingSeconds != 1 ? "s" : "");
+        return MessageTemplates.get().formatTime(seconds);
     }
 }
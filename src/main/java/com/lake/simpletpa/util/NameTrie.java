@@ -0,0 +1,190 @@
+package com.lake.simpletpa.util;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Prefix trie of player names, case-insensitive, mapping each name to the
+ * player's UUID.
+ * Updated one name at a time as players come and go, so looking up a name or
+ * listing the names under a prefix costs the length of the prefix plus the
+ * number of matches, however many players are online.
+ * Children are kept sorted, so names come out in alphabetical order.
+ */
+public class NameTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+
+    public NameTrie() {
+        this.root = new Node();
+    }
+
+    /**
+     * Adds a name, replacing any player stored under the same name.
+     *
+     * @param name       Player name, in its original case
+     * @param playerUuid UUID of the player
+     */
+    public synchronized void put(String name, UUID playerUuid) {
+        Node existing = find(name);
+        if (existing != null && existing.uuid != null) {
+            existing.name = name;
+            existing.uuid = playerUuid;
+            return;
+        }
+
+        Node node = root;
+        node.count++;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.childOrCreate(Character.toLowerCase(name.charAt(i)));
+            node.count++;
+        }
+        node.name = name;
+        node.uuid = playerUuid;
+    }
+
+    /**
+     * Removes a name if it still belongs to the given player.
+     *
+     * @param name       Player name
+     * @param playerUuid UUID of the player
+     * @return true if the name was removed
+     */
+    public synchronized boolean remove(String name, UUID playerUuid) {
+        Node node = find(name);
+        if (node == null || !playerUuid.equals(node.uuid)) {
+            return false;
+        }
+
+        node.name = null;
+        node.uuid = null;
+
+        // Walk down again dropping the branch once no name is left below it
+        node = root;
+        node.count--;
+        for (int i = 0; i < name.length(); i++) {
+            char key = Character.toLowerCase(name.charAt(i));
+            Node child = node.child(key);
+            if (--child.count == 0) {
+                node.removeChild(key);
+                break;
+            }
+            node = child;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the player stored under a name, ignoring case.
+     *
+     * @return The UUID, or null if the name is not stored
+     */
+    public synchronized UUID get(String name) {
+        Node node = find(name);
+        return node != null ? node.uuid : null;
+    }
+
+    /**
+     * Passes every name starting with a prefix, ignoring case, in
+     * alphabetical order.
+     *
+     * @param prefix   Prefix to match
+     * @param consumer Receives each name and its player's UUID
+     */
+    public synchronized void forEachWithPrefix(String prefix, BiConsumer<String, UUID> consumer) {
+        Node node = find(prefix);
+        if (node != null) {
+            visit(node, consumer);
+        }
+    }
+
+    /**
+     * Gets the number of stored names.
+     */
+    public synchronized int size() {
+        return root.count;
+    }
+
+    /**
+     * Removes every name.
+     */
+    public synchronized void clear() {
+        root.keys = NO_KEYS;
+        root.children = NO_CHILDREN;
+        root.count = 0;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(key.charAt(i)));
+        }
+        return node;
+    }
+
+    private static void visit(Node node, BiConsumer<String, UUID> consumer) {
+        if (node.uuid != null) {
+            consumer.accept(node.name, node.uuid);
+        }
+        for (Node child : node.children) {
+            visit(child, consumer);
+        }
+    }
+
+    private static final class Node {
+        // Sorted child keys, children at the same index
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        // Names stored in this node and below it
+        int count;
+        // Set when a name ends here
+        String name;
+        UUID uuid;
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            newKeys[insert] = key;
+            newChildren[insert] = new Node();
+
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insert];
+        }
+
+        void removeChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0) {
+                return;
+            }
+
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.lake.simpletpa.util;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token buckets keyed by player UUID.
+ * Each bucket is a single AtomicLong holding the time its tokens are
+ * exhausted until (the GCRA form of a token bucket), so taking a token is a
+ * single compare-and-set and a known player allocates nothing.
+ * Times are in milliseconds of TpaClock.
+ */
+public class RateLimiter {
+    private final Map<UUID, AtomicLong> buckets;
+
+    public RateLimiter() {
+        this.buckets = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Takes a token from a player's bucket.
+     *
+     * @param playerUuid UUID of the player
+     * @param now        Current time
+     * @param perMinute  Tokens refilled per minute; 0 or less disables the limit
+     * @param burst      Tokens the bucket holds when full
+     * @return true if a token was available
+     */
+    public boolean tryAcquire(UUID playerUuid, long now, int perMinute, int burst) {
+        if (perMinute <= 0) {
+            return true;
+        }
+
+        long interval = Math.max(1L, 60_000L / perMinute);
+        long capacity = interval * Math.max(1, burst);
+        AtomicLong bucket = buckets.computeIfAbsent(playerUuid, key -> new AtomicLong());
+
+        while (true) {
+            long emptyUntil = bucket.get();
+            long next = Math.max(emptyUntil, now) + interval;
+
+            if (next - now > capacity) {
+                return false;
+            }
+            if (bucket.compareAndSet(emptyUntil, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by tryAcquire, e.g. when a later check
+     * rejected the action it was taken for.
+     * Token costs add up, so this is safe however many takes happened since.
+     *
+     * @param playerUuid UUID of the player
+     * @param perMinute  The rate the token was taken with
+     */
+    public void refund(UUID playerUuid, int perMinute) {
+        if (perMinute <= 0) {
+            return;
+        }
+
+        AtomicLong bucket = buckets.get(playerUuid);
+        if (bucket != null) {
+            bucket.addAndGet(-Math.max(1L, 60_000L / perMinute));
+        }
+    }
+
+    /**
+     * Forgets a player's bucket.
+     *
+     * @param playerUuid UUID of the player
+     */
+    public void remove(UUID playerUuid) {
+        buckets.remove(playerUuid);
+    }
+
+    /**
+     * Forgets every bucket.
+     */
+    public void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Gets the number of tracked buckets.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,138 @@
+package com.lake.simpletpa.util;
+
+/**
+ * Time source for request expiry, warmups, cooldowns and stats.
+ * The current time is sampled once per server tick and cached, so hot paths
+ * read a field instead of asking the OS; it can lag behind by up to a tick.
+ * Backed by wall time, by the server tick counter (timers then follow game
+ * ticks and slow down with the server) or by a manually driven clock for
+ * simulations.
+ * All times are in milliseconds.
+ */
+public abstract class TpaClock {
+    public static final long MILLIS_PER_TICK = 50L;
+
+    private static volatile TpaClock current = new Wall();
+
+    private volatile long now;
+
+    /**
+     * @param initialTime Time cached until the first tick
+     */
+    protected TpaClock(long initialTime) {
+        this.now = initialTime;
+    }
+
+    /**
+     * Gets the time cached at the start of the current tick.
+     */
+    public static long now() {
+        return current.now;
+    }
+
+    /**
+     * Gets the clock in use.
+     */
+    public static TpaClock get() {
+        return current;
+    }
+
+    /**
+     * Replaces the clock in use.
+     * Deadlines taken from the previous clock are not converted, so this is
+     * meant for server start or for simulations.
+     *
+     * @param clock The new clock
+     */
+    public static void use(TpaClock clock) {
+        current = clock;
+    }
+
+    /**
+     * Advances the clock in use by one server tick and caches the new time.
+     * Called once per tick, before any timer is checked.
+     */
+    public static void tick() {
+        TpaClock clock = current;
+        clock.now = clock.advance();
+    }
+
+    /**
+     * Advances the clock by one tick.
+     *
+     * @return The time for the new tick
+     */
+    protected abstract long advance();
+
+    /**
+     * Wall time, sampled once per tick.
+     */
+    public static class Wall extends TpaClock {
+        public Wall() {
+            super(System.currentTimeMillis());
+        }
+
+        @Override
+        protected long advance() {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Counts server ticks; each one is worth 50 ms no matter how long it took.
+     */
+    public static class Ticks extends TpaClock {
+        // Starts one tick in so timestamps are never 0
+        private long ticks = 1;
+
+        public Ticks() {
+            super(MILLIS_PER_TICK);
+        }
+
+        @Override
+        protected long advance() {
+            return ++ticks * MILLIS_PER_TICK;
+        }
+    }
+
+    /**
+     * Clock driven by the caller, for load simulations and benchmarks.
+     * Ticks advance it by 50 ms; it can also jump ahead any amount.
+     */
+    public static class Manual extends TpaClock {
+        private long time;
+
+        /**
+         * @param startTime Initial time, must be positive
+         */
+        public Manual(long startTime) {
+            super(startTime);
+            this.time = startTime;
+        }
+
+        /**
+         * Moves the clock forward without running a tick.
+         *
+         * @param millis Milliseconds to skip
+         */
+        public synchronized void skip(long millis) {
+            set(time + millis);
+        }
+
+        /**
+         * Sets the clock to a given time.
+         *
+         * @param millis The new time
+         */
+        public synchronized void set(long millis) {
+            time = millis;
+            super.now = millis;
+        }
+
+        @Override
+        protected synchronized long advance() {
+            time += MILLIS_PER_TICK;
+            return time;
+        }
+    }
+}
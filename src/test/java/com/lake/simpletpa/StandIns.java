@@ -0,0 +1,130 @@
+package com.lake.simpletpa;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import com.lake.simpletpa.util.TpaClock;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.dedicated.DedicatedPlayerList;
+import net.minecraft.server.dedicated.DedicatedServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.players.PlayerList;
+import net.minecraft.world.level.Level;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Shared setup for the tests and benchmarks: the mod config with its default
+ * values, a manual clock they drive themselves, and lightweight stand-ins for
+ * the server objects the managers need.
+ * Stand-ins are allocated without running their constructors, only the
+ * fields the mod actually reads are filled in.
+ */
+public final class StandIns {
+    private static final Unsafe UNSAFE = unsafe();
+    public static final TpaClock.Manual CLOCK = new TpaClock.Manual(1_000_000L);
+    private static boolean bootstrapped;
+
+    private StandIns() {
+    }
+
+    /**
+     * Loads the mod config with its default values from an in-memory file and
+     * installs the manual clock.
+     * Runs again before every test so settings changed by one test do not
+     * leak into the next. Chunk preloading is disabled because tests have no
+     * levels.
+     */
+    public static synchronized void loadConfig() {
+        if (!bootstrapped) {
+            // Vanilla registries must exist before server classes initialise
+            SharedConstants.tryDetectVersion();
+            Bootstrap.bootStrap();
+            bootstrapped = true;
+        }
+
+        TpaConfig.SPEC.acceptConfig(CommentedConfig.inMemory());
+        TpaConfig.GENERAL.preloadChunks.set(false);
+        TpaConfig.GENERAL.waitForChunks.set(false);
+        TpaSettings.reload();
+        TpaClock.use(CLOCK);
+    }
+
+    /**
+     * Creates distinct random player UUIDs.
+     */
+    public static UUID[] players(int count) {
+        UUID[] players = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        return players;
+    }
+
+    /**
+     * Creates a server with an empty player list.
+     * Players are looked up through PlayerSessions, not through this list.
+     */
+    public static MinecraftServer server() {
+        DedicatedPlayerList playerList = allocate(DedicatedPlayerList.class);
+        setField(PlayerList.class, playerList, "players", new ArrayList<>());
+        setField(PlayerList.class, playerList, "playersByUUID", new HashMap<>());
+
+        DedicatedServer server = allocate(DedicatedServer.class);
+        setField(MinecraftServer.class, server, "playerList", playerList);
+        return server;
+    }
+
+    /**
+     * Creates a level that only knows its dimension.
+     */
+    public static ServerLevel level(ResourceKey<Level> dimension) {
+        ServerLevel level = allocate(ServerLevel.class);
+        setField(Level.class, level, "dimension", dimension);
+        return level;
+    }
+
+    public static <T> T allocate(Class<T> type) {
+        try {
+            return type.cast(UNSAFE.allocateInstance(type));
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Cannot allocate " + type.getName(), e);
+        }
+    }
+
+    public static void setField(Class<?> owner, Object target, String name, Object value) {
+        try {
+            field(owner, name).set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+
+    /**
+     * Looks up a field and makes it writable, for stand-ins that set it often.
+     */
+    public static Field field(Class<?> owner, String name) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot access " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unsafe is not available", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.lake.simpletpa;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Player stand-in that records the chat messages sent to it.
+ * Allocated without running the ServerPlayer constructor, only the fields
+ * the mod reads are filled in.
+ */
+public final class TestPlayer extends ServerPlayer {
+    private final List<String> messages = new ArrayList<>();
+
+    private TestPlayer() {
+        super(null, null, null);
+    }
+
+    /**
+     * Creates an English-speaking player in a level.
+     *
+     * @param uuid  UUID of the player
+     * @param name  Name of the player
+     * @param level Level the player is in
+     */
+    public static TestPlayer create(UUID uuid, String name, ServerLevel level) {
+        TestPlayer player = StandIns.allocate(TestPlayer.class);
+        StandIns.setField(TestPlayer.class, player, "messages", new ArrayList<>());
+        StandIns.setField(Entity.class, player, "uuid", uuid);
+        StandIns.setField(Entity.class, player, "stringUUID", uuid.toString());
+        StandIns.setField(Entity.class, player, "level", level);
+        StandIns.setField(Entity.class, player, "position", Vec3.ZERO);
+        StandIns.setField(Player.class, player, "gameProfile", new GameProfile(uuid, name));
+        StandIns.setField(ServerPlayer.class, player, "language", "en_us");
+        return player;
+    }
+
+    /**
+     * Gets the text of every message sent to this player, oldest first.
+     */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public void sendSystemMessage(Component message, boolean overlay) {
+        messages.add(message.getString());
+    }
+}
@@ -0,0 +1,71 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.stats.AllocationMeter;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.phys.Vec3;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The whole end-of-tick pass on an idle server allocates nothing: every
+ * player has a pending request and a long warmup, and nothing becomes due.
+ */
+class TickAllocationTest {
+    // Ticks run before measuring, so the tick path is compiled
+    private static final int WARMUP_TICKS = 20_000;
+    private static final int MEASURED_TICKS = 10_000;
+
+    private MinecraftServer server;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(AllocationMeter.isSupported(), "Thread allocation counters are not available");
+
+        StandIns.loadConfig();
+        server = StandIns.server();
+        TpaManager.getInstance().clear();
+        WarmupManager.getInstance().clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TpaManager.getInstance().clear();
+        WarmupManager.getInstance().clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1000, 10000})
+    void idleTickAllocatesNothing(int players) {
+        UUID[] uuids = StandIns.players(players);
+        for (int i = 0; i < players; i++) {
+            TpaManager.getInstance().addRequest(
+                    new TeleportRequest(uuids[i], uuids[(i + 1) % players], RequestType.TPA));
+            WarmupManager.getInstance().startWarmup(new WarmupTask(uuids[i], uuids[i], RequestType.TPA,
+                    Vec3.ZERO, null, Vec3.ZERO, 0.0F, 0.0F, 60));
+        }
+
+        // The clock is not advanced, so every tick is the same idle tick
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            SimpleTPA.runTick(server);
+        }
+
+        long before = AllocationMeter.currentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            SimpleTPA.runTick(server);
+        }
+        long allocated = AllocationMeter.currentThreadAllocatedBytes() - before;
+
+        // Anything real is at least an object header per tick
+        assertEquals(0, allocated / MEASURED_TICKS, () -> "Idle tick allocated " + allocated / MEASURED_TICKS
+                + " bytes per tick with " + players + " players");
+        assertEquals(players, TpaManager.getInstance().getRequestCount());
+        assertEquals(players, WarmupManager.getInstance().getWarmupCount());
+    }
+}
@@ -0,0 +1,172 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.TpaClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Adds, accepts and expires requests from several threads at once, as
+ * network and command threads do against the server thread's expiry.
+ * Every request must end up either accepted once or expired once, and the
+ * inbox and outgoing indexes must agree on what is still pending.
+ */
+class TpaManagerConcurrencyTest {
+    private static final int SENDERS = 4000;
+    private static final int TARGETS = 200;
+    private static final int PRODUCERS = 2;
+    private static final int ACCEPTORS = 4;
+
+    private TpaManager manager;
+    private UUID[] senders;
+    private UUID[] targets;
+
+    @BeforeEach
+    void setUp() {
+        StandIns.loadConfig();
+        // Room for every request a target gets, so nothing is evicted
+        TpaConfig.GENERAL.maxPendingPerTarget.set(SENDERS / TARGETS);
+        TpaConfig.GENERAL.requestExpiration.set(1);
+        TpaSettings.reload();
+
+        manager = TpaManager.getInstance();
+        manager.clear();
+        senders = StandIns.players(SENDERS);
+        targets = StandIns.players(TARGETS);
+    }
+
+    @RepeatedTest(20)
+    void everyRequestIsAcceptedOrExpiredExactlyOnce(RepetitionInfo repetition) throws Exception {
+        AtomicIntegerArray accepted = new AtomicIntegerArray(SENDERS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long expiredBefore = TpaStats.getInstance().requestsExpired.getTotal();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p;
+            workers.add(thread(start, failure, () -> {
+                for (int i = first; i < SENDERS; i += PRODUCERS) {
+                    manager.addRequest(new TeleportRequest(senders[i], target(i), RequestType.TPA));
+                }
+            }));
+        }
+        for (int a = 0; a < ACCEPTORS; a++) {
+            // Acceptors walk overlapping ranges from different offsets, so
+            // they race each other as well as the expiry
+            int offset = a * SENDERS / ACCEPTORS + repetition.getCurrentRepetition();
+            workers.add(thread(start, failure, () -> {
+                for (int pass = 0; pass < 3; pass++) {
+                    for (int n = 0; n < SENDERS; n++) {
+                        int i = (offset + n) % SENDERS;
+                        // Leave a third of the requests for the expiry
+                        if (i % 3 == 0) {
+                            continue;
+                        }
+                        TeleportRequest request = manager.getRequest(target(i), senders[i]);
+                        if (request != null && manager.removeRequest(request)) {
+                            accepted.incrementAndGet(i);
+                        }
+                    }
+                }
+            }));
+        }
+        Thread server = thread(start, failure, () -> {
+            while (running.get()) {
+                TpaClock.tick();
+                manager.cleanExpired(null);
+                Thread.sleep(1);
+            }
+        });
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        server.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        running.set(false);
+        server.join(TimeUnit.SECONDS.toMillis(30));
+        assertNull(failure.get(), () -> "Worker failed: " + failure.get());
+
+        // Whatever is still pending must be indexed both ways
+        int pending = assertIndexesConsistent();
+        long acceptedTotal = 0;
+        for (int i = 0; i < SENDERS; i++) {
+            assertTrue(accepted.get(i) <= 1, "Request " + i + " accepted " + accepted.get(i) + " times");
+            acceptedTotal += accepted.get(i);
+        }
+        long expired = TpaStats.getInstance().requestsExpired.getTotal() - expiredBefore;
+        assertEquals(SENDERS, acceptedTotal + expired + pending);
+
+        // Expiring the rest leaves both indexes empty
+        StandIns.CLOCK.skip(TpaSettings.get().requestExpirationMs + 1);
+        manager.cleanExpired(null);
+        expired = TpaStats.getInstance().requestsExpired.getTotal() - expiredBefore;
+        assertEquals(SENDERS, acceptedTotal + expired);
+        assertEquals(0, assertIndexesConsistent());
+        assertEquals(0, manager.getRequestCount());
+    }
+
+    private UUID target(int sender) {
+        return targets[sender % TARGETS];
+    }
+
+    /**
+     * Checks that every pending request is in its target's inbox and in its
+     * sender's outgoing requests, as the same instance.
+     *
+     * @return Number of pending requests
+     */
+    private int assertIndexesConsistent() {
+        int pending = 0;
+        for (int i = 0; i < SENDERS; i++) {
+            TeleportRequest inInbox = manager.getRequest(target(i), senders[i]);
+            TeleportRequest inOutgoing = null;
+            for (TeleportRequest request : manager.getOutgoingRequests(senders[i])) {
+                assertSame(target(i), request.getTarget());
+                inOutgoing = request;
+            }
+            assertSame(inInbox, inOutgoing, "Indexes disagree on request " + i);
+            if (inInbox != null) {
+                pending++;
+            }
+        }
+        assertEquals(pending, manager.getRequestCount());
+        return pending;
+    }
+
+    private static Thread thread(CountDownLatch start, AtomicReference<Throwable> failure, Task task) {
+        return new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lake.simpletpa;
+
+import com.lake.simpletpa.stats.TpaStats;
+import com.lake.simpletpa.util.TpaClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Request expiry on a manual clock: a tick only looks at the requests that
+ * are due, so an idle tick touches nothing however many are pending.
+ */
+class TpaManagerExpiryTest {
+    private TpaManager manager;
+
+    @BeforeEach
+    void setUp() {
+        StandIns.loadConfig();
+        manager = TpaManager.getInstance();
+        manager.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1000, 10000})
+    void idleTickTouchesNoRequests(int players) {
+        UUID[] uuids = fill(players);
+
+        // The first tick only moves the new requests into the expiry queue
+        assertEquals(0, manager.cleanExpired(null));
+        for (int i = 0; i < 100; i++) {
+            TpaClock.tick();
+            assertEquals(0, manager.cleanExpired(null));
+        }
+        assertEquals(players, manager.getRequestCount());
+        assertEquals(uuids[0], manager.getRequest(uuids[1]).getSender());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1000, 10000})
+    void dueTickExpiresEveryPendingRequest(int players) {
+        fill(players);
+        long expired = TpaStats.getInstance().requestsExpired.getTotal();
+
+        StandIns.CLOCK.skip(TpaSettings.get().requestExpirationMs + 1);
+
+        assertEquals(players, manager.cleanExpired(null));
+        assertEquals(players, TpaStats.getInstance().requestsExpired.getTotal() - expired);
+        assertEquals(0, manager.getRequestCount());
+
+        // Nothing is left to look at afterwards
+        assertEquals(0, manager.cleanExpired(null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1000, 10000})
+    void answeredRequestsAreSkippedWhenDue(int players) {
+        UUID[] uuids = fill(players);
+        manager.cleanExpired(null);
+        long expired = TpaStats.getInstance().requestsExpired.getTotal();
+
+        // Answer every other request before it expires
+        for (int i = 0; i < players; i += 2) {
+            manager.removeRequest(manager.getRequest(uuids[(i + 1) % players], uuids[i]));
+        }
+        StandIns.CLOCK.skip(TpaSettings.get().requestExpirationMs + 1);
+
+        // Every queued entry is due, but only the unanswered ones expire
+        assertEquals(players, manager.cleanExpired(null));
+        assertEquals(players / 2, TpaStats.getInstance().requestsExpired.getTotal() - expired);
+        assertEquals(0, manager.getRequestCount());
+    }
+
+    /**
+     * Sends one request from every player to the next one.
+     */
+    private UUID[] fill(int players) {
+        UUID[] uuids = StandIns.players(players);
+        for (int i = 0; i < players; i++) {
+            manager.addRequest(new TeleportRequest(uuids[i], uuids[(i + 1) % players], RequestType.TPA));
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,251 @@
+package com.lake.simpletpa.network;
+
+import com.lake.simpletpa.PlayerSessions;
+import com.lake.simpletpa.RequestType;
+import com.lake.simpletpa.StandIns;
+import com.lake.simpletpa.TestPlayer;
+import com.lake.simpletpa.TpaConfig;
+import com.lake.simpletpa.TpaManager;
+import com.lake.simpletpa.TpaSettings;
+import com.lake.simpletpa.WarmupManager;
+import com.lake.simpletpa.commands.TpaCommands;
+import com.lake.simpletpa.util.MessageTemplates;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec2;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes on a LoopbackTransport hub: this JVM's TpaNetwork is node "a"
+ * with a local player, and the test plays node "b", where a remote player
+ * is online, by publishing and decoding batches itself.
+ */
+class TpaNetworkTest {
+    private static final String REMOTE_NAME = "Bob";
+
+    private final UUID remoteUuid = UUID.randomUUID();
+    private final Queue<ByteBuffer> received = new ConcurrentLinkedQueue<>();
+    private final CommandDispatcher<CommandSourceStack> dispatcher = new CommandDispatcher<>();
+
+    private TpaNetwork network;
+    private TpaManager manager;
+    private LoopbackTransport peer;
+    private TestPlayer local;
+    private CommandSourceStack localSource;
+
+    @BeforeEach
+    void setUp() {
+        StandIns.loadConfig();
+        manager = TpaManager.getInstance();
+        network = TpaNetwork.getInstance();
+        manager.clear();
+        WarmupManager.getInstance().clear();
+        PlayerSessions.getInstance().clear();
+        TpaCommands.register(dispatcher);
+
+        MinecraftServer server = StandIns.server();
+        LoopbackTransport.Hub hub = new LoopbackTransport.Hub();
+        network.connect("a", hub.connect(), server);
+        peer = hub.connect();
+        peer.setReceiver(received::offer);
+
+        local = TestPlayer.create(UUID.randomUUID(), "Alice", StandIns.level(Level.OVERWORLD));
+        localSource = new CommandSourceStack(local, Vec3.ZERO, Vec2.ZERO, local.serverLevel(), 0, "Alice",
+                local.getName(), server, local);
+        PlayerSessions.getInstance().onLoggedIn(new PlayerEvent.PlayerLoggedInEvent(local));
+
+        publish(new TpaMessage(TpaMessage.Kind.JOIN, null, remoteUuid, null, REMOTE_NAME));
+        network.flush();
+        received.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        network.disconnect();
+        manager.clear();
+        WarmupManager.getInstance().clear();
+        PlayerSessions.getInstance().clear();
+    }
+
+    @Test
+    void remoteRequestReachesLocalTarget() {
+        publish(request(RequestType.TPA));
+
+        assertNotNull(manager.getRequest(local.getUUID(), remoteUuid));
+        assertEquals(1, local.getMessages().size());
+        assertTrue(local.getMessages().get(0).contains(REMOTE_NAME));
+    }
+
+    @Test
+    void localRequestIsRelayedToRemoteTarget() throws CommandSyntaxException {
+        dispatcher.execute("tpa " + REMOTE_NAME, localSource);
+
+        TpaMessage message = single(TpaMessage.Kind.REQUEST);
+        assertEquals(RequestType.TPA, message.getType());
+        assertEquals(local.getUUID(), message.getSender());
+        assertEquals(remoteUuid, message.getTarget());
+        assertEquals("Alice", message.getName());
+        assertNotNull(manager.getRequest(remoteUuid, local.getUUID()));
+    }
+
+    @Test
+    void acceptSendsAcceptAndExpectsTheSender() throws CommandSyntaxException {
+        publish(request(RequestType.TPA));
+
+        dispatcher.execute("tpaccept", localSource);
+
+        TpaMessage message = single(TpaMessage.Kind.ACCEPT);
+        assertEquals(remoteUuid, message.getSender());
+        assertEquals(local.getUUID(), message.getTarget());
+        assertNull(manager.getRequest(local.getUUID(), remoteUuid));
+    }
+
+    @Test
+    void arrivingSenderGoesThroughTheWarmup() throws CommandSyntaxException {
+        TpaConfig.GENERAL.teleportWarmup.set(3);
+        TpaConfig.GENERAL.safeLanding.set(false);
+        TpaSettings.reload();
+        publish(request(RequestType.TPA));
+        dispatcher.execute("tpaccept", localSource);
+        single(TpaMessage.Kind.ACCEPT);
+
+        // The proxy moves Bob here
+        TestPlayer arriving = TestPlayer.create(remoteUuid, REMOTE_NAME, StandIns.level(Level.OVERWORLD));
+        PlayerEvent.PlayerLoggedInEvent login = new PlayerEvent.PlayerLoggedInEvent(arriving);
+        PlayerSessions.getInstance().onLoggedIn(login);
+        network.onLoggedIn(login);
+
+        assertTrue(WarmupManager.getInstance().isWarming(remoteUuid));
+        assertEquals(MessageTemplates.get(arriving).warmupStart.render(3).getString(),
+                last(arriving.getMessages()));
+    }
+
+    @Test
+    void failedTransferKeepsTheRequestAndSendsNoAccept() throws CommandSyntaxException {
+        // The loopback transport cannot move players, so the executor stays here
+        publish(request(RequestType.TPA_HERE));
+
+        dispatcher.execute("tpaccept", localSource);
+        network.flush();
+
+        assertTrue(received.isEmpty());
+        assertNotNull(manager.getRequest(local.getUUID(), remoteUuid));
+        assertEquals(MessageTemplates.get(local).transferFailed.render().getString(),
+                last(local.getMessages()));
+    }
+
+    @Test
+    void denySendsDeny() throws CommandSyntaxException {
+        publish(request(RequestType.TPA));
+
+        dispatcher.execute("tpdeny", localSource);
+
+        single(TpaMessage.Kind.DENY);
+        assertNull(manager.getRequest(local.getUUID(), remoteUuid));
+    }
+
+    @Test
+    void remoteDenyClosesLocalRequest() throws CommandSyntaxException {
+        dispatcher.execute("tpa " + REMOTE_NAME, localSource);
+        single(TpaMessage.Kind.REQUEST);
+
+        publish(new TpaMessage(TpaMessage.Kind.DENY, RequestType.TPA, local.getUUID(), remoteUuid, null));
+
+        assertNull(manager.getRequest(remoteUuid, local.getUUID()));
+        assertEquals(MessageTemplates.get(local).requestDenied.render().getString(),
+                last(local.getMessages()));
+    }
+
+    @Test
+    void expirySendsExpire() {
+        publish(request(RequestType.TPA));
+
+        StandIns.CLOCK.skip(TpaSettings.get().requestExpirationMs + 1);
+        manager.cleanExpired(null);
+
+        single(TpaMessage.Kind.EXPIRE);
+        assertNull(manager.getRequest(local.getUUID(), remoteUuid));
+    }
+
+    @Test
+    void remoteExpireClosesLocalRequest() throws CommandSyntaxException {
+        dispatcher.execute("tpa " + REMOTE_NAME, localSource);
+        single(TpaMessage.Kind.REQUEST);
+
+        publish(new TpaMessage(TpaMessage.Kind.EXPIRE, RequestType.TPA, local.getUUID(), remoteUuid, null));
+
+        assertNull(manager.getRequest(remoteUuid, local.getUUID()));
+        assertEquals(MessageTemplates.get(local).requestExpired.render().getString(),
+                last(local.getMessages()));
+    }
+
+    @Test
+    void rateLimitedRequestIsDenied() {
+        TpaConfig.GENERAL.targetRequestsPerMinute.set(1);
+        TpaConfig.GENERAL.targetRequestBurst.set(1);
+        TpaSettings.reload();
+        UUID secondSender = UUID.randomUUID();
+        publish(new TpaMessage(TpaMessage.Kind.JOIN, null, secondSender, null, "Carol"));
+
+        publish(request(RequestType.TPA));
+        publish(new TpaMessage(TpaMessage.Kind.REQUEST, RequestType.TPA, secondSender, local.getUUID(), "Carol"));
+
+        TpaMessage message = single(TpaMessage.Kind.DENY);
+        assertEquals(secondSender, message.getSender());
+        assertNull(manager.getRequest(local.getUUID(), secondSender));
+    }
+
+    private TpaMessage request(RequestType type) {
+        return new TpaMessage(TpaMessage.Kind.REQUEST, type, remoteUuid, local.getUUID(), REMOTE_NAME);
+    }
+
+    /**
+     * Publishes a message from node "b" and lets node "a" apply it.
+     */
+    private void publish(TpaMessage message) {
+        peer.publish(TpaCodec.encode("b", List.of(message)));
+        network.processIncoming();
+    }
+
+    /**
+     * Flushes node "a" and expects exactly one message of a kind on node "b".
+     */
+    private TpaMessage single(TpaMessage.Kind kind) {
+        network.flush();
+
+        List<TpaMessage> messages = new ArrayList<>();
+        ByteBuffer batch;
+        while ((batch = received.poll()) != null) {
+            TpaCodec.Batch decoded = TpaCodec.decode(batch);
+            assertEquals("a", decoded.getNode());
+            messages.addAll(decoded.getMessages());
+        }
+
+        assertEquals(1, messages.size(), () -> "Expected one " + kind + ", got " + messages.size());
+        assertEquals(kind, messages.get(0).getKind());
+        return messages.get(0);
+    }
+
+    private static String last(List<String> messages) {
+        return messages.get(messages.size() - 1);
+    }
+}